@@ -1,8 +1,8 @@
 package com.infinira.aerospike.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.infinira.aerospike.dataaccess.model.Entity;
+import com.infinira.aerospike.dataaccess.model.ValueEncoding;
 import com.infinira.aerospike.dataaccess.util.Utils;
 
 import java.io.IOException;
@@ -106,6 +106,12 @@ public class Product extends Entity<Product> {
         super(bins, generation, expiration);
     }
 
+    // Store prices and flags as numbers instead of strings. Records with string values remain readable.
+    @Override
+    protected ValueEncoding getValueEncoding() {
+        return ValueEncoding.COMPACT;
+    }
+
     // Sets the key value
     @JsonIgnore
     public void setKey(Object key) {
@@ -153,17 +159,16 @@ public class Product extends Entity<Product> {
     // add new category and update the list by invoking a setter method.
 
     public ArrayList<String> getCategories() throws IOException {
-        String categories = getString(CATEGORIES);
-        return (ArrayList<String>) Utils.getObjectMapper().readValue(categories, List.class);
+        Object categories = getValue(CATEGORIES);
+        // Records written by earlier versions store categories as a JSON string.
+        if (categories instanceof String)
+            return (ArrayList<String>) Utils.getObjectMapper().readValue((String) categories, List.class);
+        return categories != null ? new ArrayList<String>(getStringList(CATEGORIES)) : null;
     }
 
-    // Note that categories are stored as JSON string in the database.
+    // Categories are stored as a native list, so a single category can be added with listAppend.
     public void setCategories(ArrayList<String> categories) {
-        try {
-            setValue(CATEGORIES, Utils.getObjectMapper().writeValueAsString(categories));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        setList(CATEGORIES, categories);
     }
 
     public String getName() {
@@ -330,15 +335,15 @@ public class Product extends Entity<Product> {
     //Store custom properties as JSON string in the database
 
     public HashMap<String, Object> getCustomProp() throws IOException {
-        String customProp = getString(CUSTOM_PROP);
-        return (HashMap<String, Object>) Utils.getObjectMapper().readValue(customProp, Map.class);
+        Object customProp = getValue(CUSTOM_PROP);
+        // Records written by earlier versions store custom properties as a JSON string.
+        if (customProp instanceof String)
+            return (HashMap<String, Object>) Utils.getObjectMapper().readValue((String) customProp, Map.class);
+        return customProp != null ? new HashMap<String, Object>(getStringMap(CUSTOM_PROP)) : null;
     }
 
+    // Custom properties are stored as a native map, so a single property can be changed with mapPut.
     public void setCustomProp(HashMap<String, Object> customProp) {
-        try {
-            setValue(CUSTOM_PROP, Utils.getObjectMapper().writeValueAsString(customProp));
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
+        setMap(CUSTOM_PROP, customProp);
     }
 }
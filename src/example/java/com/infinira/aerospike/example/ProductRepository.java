@@ -34,17 +34,29 @@ public class ProductRepository extends AerospikeRepository<Product> {
      */
     public ArrayList<Category> getProductCategories(String productId) throws IOException, IllegalAccessException, InstantiationException {
         Assert.notNull(productId, "Product Id cannot be null or empty");
-        if (exists(productId))
-        {
-            // Get the product category id list
-            // Get the product category list JSON from DB
-            String categoryJSON = (String) get(productId,Product.CATEGORIES);
-            // Convert them into list of string.
-            ArrayList<String> categoryIds = (ArrayList<String>) Utils.getObjectMapper().readValue(categoryJSON, List.class);
-            // Retrieve Category objects from Category table.
-            ArrayList<Category> categories = RepositoryFactory.getCategoryRepository().findAll((String[]) categoryIds.toArray(new String[categoryIds.size()]));
-            return categories;
+        // Get the product category id list. Null if the product does not exist.
+        Object categoryValue = get(productId, Product.CATEGORIES);
+        if (categoryValue == null)
+            return null;
+        List<String> categoryIds;
+        if (categoryValue instanceof String) {
+            // Records written by earlier versions store categories as a JSON string.
+            categoryIds = (List<String>) Utils.getObjectMapper().readValue((String) categoryValue, List.class);
+        } else {
+            categoryIds = (List<String>) categoryValue;
         }
-        else return null;
+        // Retrieve Category objects from Category table.
+        return RepositoryFactory.getCategoryRepository().findAll(categoryIds.toArray(new String[categoryIds.size()]));
+    }
+
+    /**
+     * Adds a category to a product without reading and rewriting the category list.
+     * @param productId Product id (key)
+     * @param categoryId Category id
+     * @return number of categories
+     */
+    public long addProductCategory(String productId, String categoryId) {
+        Assert.notNull(productId, "Product Id cannot be null or empty");
+        return listAppend(productId, Product.CATEGORIES, categoryId);
     }
 }
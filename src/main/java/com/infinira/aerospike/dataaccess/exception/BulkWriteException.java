@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.exception;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Runtime exception thrown after a bulk write completed with one or more failed records.
+ */
+public class BulkWriteException extends RuntimeException {
+    private final long failedCount;
+    private final Map<String, Throwable> failures;
+
+    /**
+     * Constructs a new BulkWriteException.
+     *
+     * @param message     the reason for the exception
+     * @param failedCount number of records that could not be written
+     * @param failures    reported failures by key value
+     */
+    public BulkWriteException(String message, long failedCount, Map<String, Throwable> failures) {
+        super(message);
+        this.failedCount = failedCount;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Constructs a new BulkWriteException for a bulk write that was stopped before all records were written.
+     *
+     * @param message     the reason for the exception
+     * @param failedCount number of records that failed or were not written
+     * @param failures    reported failures by key value
+     * @param cause       the reason the bulk write was stopped
+     */
+    public BulkWriteException(String message, long failedCount, Map<String, Throwable> failures, Throwable cause) {
+        super(message, cause);
+        this.failedCount = failedCount;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+}
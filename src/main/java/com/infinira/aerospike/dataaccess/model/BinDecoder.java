@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.model;
+
+/**
+ * Decodes bin values that an entity keeps in their database form until the field is first read.
+ * Entity.getValue replaces an encoded value with the decoded value on first access.
+ */
+public interface BinDecoder {
+    /**
+     * Checks if a bin value read from the database is encoded.
+     * @param value bin value
+     * @return true if the value must be decoded before use
+     */
+    boolean isEncoded(Object value);
+
+    /**
+     * Decodes a bin value.
+     * @param value encoded bin value
+     * @return decoded value
+     */
+    Object decode(Object value);
+}
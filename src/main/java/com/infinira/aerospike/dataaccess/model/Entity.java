@@ -24,8 +24,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -40,6 +43,8 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
     public final static String FIELDS = "bins";
     public final static String FIELD_NAMES = "fieldNames";
     public final static String PERSISTED = "persisted";
+    // Format version of packed BigDecimal values.
+    private final static byte BIG_DECIMAL_FORMAT = 1;
 
     // No need to serialize these attributes (transient)
     protected transient boolean persisted = false;
@@ -48,19 +53,29 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
     protected transient boolean isFromDb = false;
     protected transient int generation;
     protected transient int expiration;
+    // Only some fields were read from the database.
+    protected transient boolean partial = false;
+    // Decodes bins that are still in their database form. Null for entities not read from the database.
+    protected transient BinDecoder decoder;
+    // Fields that still hold the encoded value read from the database. Null if there are none. Values set by
+    // the application are never decoded, whatever their content.
+    protected transient Set<String> encodedFields;
+    // Instance is reused for the next record of a scan or query.
+    protected transient boolean reused = false;
 
     // Hashmap that maintains all attributes and value pairs.
     @JsonIgnore
     protected Map<String, Object> bins;
     // Field value change status helps in updating an object without requiring to externally keep track of changes.
+    // Created on first change, so that entities that are only read do not allocate it.
     @JsonIgnore
-    protected transient HashSet<String> valueChangeStatus = new HashSet<String>();
+    protected transient HashSet<String> valueChangeStatus;
 
     /**
      * Default  Entity constructor with map <fields, values>
      */
     protected Entity() {
-        this(new HashMap<String, Object>(), 0, 0);
+        this.bins = new HashMap<String, Object>();
     }
 
     /**
@@ -76,36 +91,7 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
         // Iterate the entries in bins structure and check if there are any data type conversions needed.
         if (data != null && data.size() > 0) {
             for (Map.Entry<String, Object> entry : data.entrySet()) {
-                String name = entry.getKey();
-                Object value = entry.getValue();
-                if(value != null) {
-                    if (value instanceof Boolean) {
-                        // Convert boolean value into 0 or 1 string. Takes less storage space than long (64 bits) and is indexable.
-                        String boolStr = "0";
-                        if ((Boolean) value) boolStr = "1";
-                        this.bins.put(name, boolStr);
-                    } else if (value instanceof Float) {
-                        // Get a string from the value and store the value instead of Float serialized object.
-                        this.bins.put(name, ((Float) value).toString());
-                    } else if (value instanceof Integer) {
-                        // Convert integer into long value
-                        this.bins.put(name, ((Integer) value).longValue());
-                    } else if (value instanceof Short) {
-                        // Convert short into long value
-                        this.bins.put(name, ((Short) value).longValue());
-                    } else if (value instanceof Double) {
-                        // Just keep Double object. Repository will take care of storing double instead of serailzed object
-                        this.bins.put(name, value);//((Double)value).doubleValue());
-                    } else if (value instanceof BigDecimal) {
-                        // Get a string from the value and store the value instead of BigDecimal serialized object.
-                        this.bins.put(name, ((BigDecimal) value).toPlainString());
-                    } else if (value instanceof Timestamp) {
-                        // Get timestamp time value
-                        this.bins.put(name, ((Timestamp) value).getTime());
-                    } else {
-                        this.bins.put(name, value);
-                    }
-                } else  this.bins.put(name, value);
+                this.bins.put(entry.getKey(), encodeValue(entry.getValue()));
             }
         }
         this.generation = generation;
@@ -133,13 +119,68 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
         this.persisted = persisted;
     }
 
+    /**
+     * Checks if only some fields of this entity were read from the database. Fields that were not read
+     * are null, and writes of a partial entity never touch them.
+     * @return true if partially read
+     */
+    @JsonIgnore
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Checks if this entity is a reused scan entity. A reused entity is valid only until the scan or query
+     * moves to the next record; keep a copy with detach().
+     * @return true if reused
+     */
+    @JsonIgnore
+    public boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Gets an entity that stays valid after this one is reused. Returns this entity if it is not reused,
+     * otherwise a new instance with a copy of the fields and the record state. Collection values are shared
+     * with the reused entity until it moves to the next record, so change them only on the copy.
+     * @return entity that is safe to keep
+     */
+    public Entity detach() {
+        if (!reused)
+            return this;
+        Entity copy;
+        try {
+            copy = EntityMetadata.forClass(getClass()).newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Cannot create " + getClass().getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create " + getClass().getName(), e);
+        }
+        copy.bins = new HashMap<String, Object>(bins);
+        if (valueChangeStatus != null && !valueChangeStatus.isEmpty())
+            copy.valueChangeStatus = new HashSet<String>(valueChangeStatus);
+        copy.decoder = decoder;
+        if (encodedFields != null)
+            copy.encodedFields = new HashSet<String>(encodedFields);
+        copy.persisted = persisted;
+        copy.modified = modified;
+        copy.mutable = mutable;
+        copy.isFromDb = isFromDb;
+        copy.generation = generation;
+        copy.expiration = expiration;
+        copy.partial = partial;
+        return copy;
+    }
+
 
     /**
-     * Internal method to obtain HashMap and directly store values to database
+     * Internal method to obtain HashMap and directly store values to database. Encoded values read from the
+     * database are decoded first, so the map never holds their database form.
      * @return bins (attribute, value) pairs.
      */
     @JsonIgnore
     public Map<String, Object> getAllFieldValues() {
+        decodeAll();
         return bins;
     }
 
@@ -149,6 +190,8 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      */
     @JsonIgnore
     public HashSet<String> getValueChangeStatus() {
+        if (valueChangeStatus == null)
+            valueChangeStatus = new HashSet<String>();
         return valueChangeStatus;
     }
 
@@ -157,19 +200,59 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      */
     @JsonIgnore
     public void clearValueChangeStatus() {
-        valueChangeStatus.clear();
+        if (valueChangeStatus != null)
+            valueChangeStatus.clear();
     }
 
 
     // Gets the value of a given field name.
 
     /**
-     * Gets the value of a given field name.
+     * Gets the value of a given field name. Encoded values read from the database are decoded on first access
+     * and the decoded value replaces the encoded one, so this read modifies the entity. Like all other methods
+     * of Entity it is not thread safe: synchronize concurrent reads of a shared entity or give every thread its
+     * own copy.
      * @param name field name
      * @return  Value object
      */
     public Object getValue(String name) {
-        return this.bins == null ? null : this.bins.get(name);
+        if (this.bins == null)
+            return null;
+        Object value = this.bins.get(name);
+        // Decode lazily loaded values on first access and keep the decoded value.
+        if (encodedFields != null && encodedFields.remove(name)) {
+            value = decoder.decode(value);
+            this.bins.put(name, value);
+        }
+        return value;
+    }
+
+    // Sets the decoder of the bins read from the database and finds the fields that hold encoded values.
+    void setDecoder(BinDecoder decoder) {
+        this.decoder = decoder;
+        this.encodedFields = null;
+        for (Map.Entry<String, Object> entry : bins.entrySet()) {
+            if (decoder.isEncoded(entry.getValue())) {
+                if (encodedFields == null)
+                    encodedFields = new HashSet<String>();
+                encodedFields.add(entry.getKey());
+            }
+        }
+    }
+
+    // Decodes all fields that still hold the encoded value read from the database.
+    private void decodeAll() {
+        if (encodedFields == null)
+            return;
+        for (String name : new ArrayList<String>(encodedFields)) {
+            getValue(name);
+        }
+    }
+
+    // The decoder is not serialized, so encoded values are decoded before the bins are written.
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        decodeAll();
+        out.defaultWriteObject();
     }
 
     // Getter methods for generic types.
@@ -200,8 +283,8 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      * @return  BigDecimal value
      */
     protected BigDecimal getBigDecimal(String name) {
-        String value = this.getString(name);
-        return value != null ? new BigDecimal(value) : null;
+        Object value = this.getValue(name);
+        return value != null ? decodeBigDecimal(value) : null;
     }
 
     /**
@@ -210,8 +293,10 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      * @return  Float value
      */
     protected Float getFloat(String name) {
-        String value = this.getString(name);
-        return value != null ? new Float(value) : null;
+        Object value = this.getValue(name);
+        if (value == null) return null;
+        // Compact encoding stores a double, the string encoding a string.
+        return (value instanceof Number) ? ((Number) value).floatValue() : new Float((String) value);
     }
 
     /**
@@ -250,8 +335,10 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      * @return  Boolean value
      */
     protected Boolean getBoolean(String name) {
-        String value = this.getString(name);
-        return value != null ? value.equals("1") : null;
+        Object value = this.getValue(name);
+        if (value == null) return null;
+        // Compact encoding stores an integer, the string encoding "0" or "1".
+        return (value instanceof Number) ? ((Number) value).longValue() != 0 : value.equals("1");
     }
 
     /**
@@ -265,7 +352,8 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
     }
 
     /**
-     * Get List object for a given field value. Note lists are stored as serialzed objects in the database.
+     * Get List object for a given field value. Lists of native values (strings, integers, doubles, byte arrays,
+     * lists and maps) are stored as native Aerospike lists. Integer elements are read back as Long.
      * @param name  field name
      * @return  List value
      */
@@ -274,7 +362,17 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
     }
 
     /**
-     * Get Map object for a given field value. Note maps are stored as serialzed objects in the database.
+     * Get List of strings for a given field value.
+     * @param name  field name
+     * @return  List value
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> getStringList(String name) {
+        return (List<String>) this.getValue(name);
+    }
+
+    /**
+     * Get Map object for a given field value. Maps of native keys and values are stored as native Aerospike maps.
      * @param name  field name
      * @return  Map value
      */
@@ -282,6 +380,47 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
         return (Map<?, ?>) this.getValue(name);
     }
 
+    /**
+     * Get Map with string keys for a given field value.
+     * @param name  field name
+     * @return  Map value
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> getStringMap(String name) {
+        return (Map<String, Object>) this.getValue(name);
+    }
+
+    /**
+     * Sets a list value. A list of native values is stored as a native Aerospike list, so that elements can be
+     * changed with repository list operations without rewriting the list.
+     * @param name  field name
+     * @param list  list value
+     */
+    protected void setList(String name, List<?> list) {
+        setCollection(name, list);
+    }
+
+    /**
+     * Sets a map value. A map of native keys and values is stored as a native Aerospike map, so that entries can
+     * be changed with repository map operations without rewriting the map.
+     * @param name  field name
+     * @param map  map value
+     */
+    protected void setMap(String name, Map<?, ?> map) {
+        setCollection(name, map);
+    }
+
+    // Collections can be changed in place, so they are always marked as changed.
+    private void setCollection(String name, Object value) {
+        if (!mutable) {
+            logger.error("Object is an immutable object. Updates are not allowed.");
+            return;
+        }
+        if (generation > 0)
+            getValueChangeStatus().add(name);
+        storeInBin(name, value);
+    }
+
     /**
      * Get GeoJSON object for a given field value.
      * @param name  field name
@@ -297,7 +436,7 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
      * @return  Object value
      */
     public Object getObject(String name) {
-        return (bins == null) ? null : bins.get(name);
+        return this.getValue(name);
     }
 
     /**
@@ -339,62 +478,112 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
             // If both current and new values are equal (plain string comparison), return.
             if (currentValue != null && value != null && currentValue.toString().equals(value.toString()))
                 return;
-
-            // If generation is greater than 0, set the valueChangeStatus to true;
-            if (generation > 0)
-                valueChangeStatus.add(name); // Update the change status.
         }
 
+        // If generation is greater than 0, set the valueChangeStatus to true. New fields are changes as well.
+        if (generation > 0)
+            getValueChangeStatus().add(name); // Update the change status.
+
         // Store the value.
         storeInBin(name, value);
     }
 
     private void storeInBin(String name, Object value) {
-        if (value == null) {
-            bins.put(name, value);
-        } else {
-            if (value instanceof Boolean) {
-                // Convert boolean value into 0 or 1 string
-                String boolStr = "0";
-                if ((Boolean) value) boolStr = "1";
-                bins.put(name, boolStr);
-            } else if (value instanceof Float) {
-                // Get a string from the value and store the value instead of Float serialized object.
-                bins.put(name, ((Float) value).toString());
-            } else if (value instanceof Integer) {
-                // Convert integer into long value
-                bins.put(name, ((Integer) value).longValue());
-            } else if (value instanceof Short) {
-                // Convert short into long value
-                bins.put(name, ((Short) value).longValue());
-            } else if (value instanceof BigDecimal) {
-                // Get a string from the value and store the value instead of BigDecimal serialized object.
-                bins.put(name, ((BigDecimal) value).toPlainString());
-            } else if (value instanceof Double) {
-                // Get a string from the value and store the value instead of Double serialized object.
-                bins.put(name, ((Double)value).doubleValue());
-            } else if (value instanceof Timestamp) {
-                // Get timestamp time value
-                bins.put(name, ((Timestamp) value).getTime());
-            } else {
-                bins.put(name, value);
-            }
-        }
+        if (encodedFields != null)
+            encodedFields.remove(name);
+        bins.put(name, encodeValue(value));
         if(!modified)
             modified = true; // Entity changed.
     }
 
+    /**
+     * Gets the storage encoding of Float, BigDecimal and Boolean values. Override to choose the compact encoding
+     * for an entity class. Getters read values of every encoding.
+     * @return value encoding
+     */
+    @JsonIgnore
+    protected ValueEncoding getValueEncoding() {
+        return ValueEncoding.STRING;
+    }
+
+    // Converts a value into its storage form.
+    private Object encodeValue(Object value) {
+        if (value == null)
+            return null;
+        boolean compact = getValueEncoding() == ValueEncoding.COMPACT;
+        if (value instanceof Boolean) {
+            // Convert boolean value into 0 or 1. Takes less storage space than long (64 bits) and is indexable.
+            if (compact)
+                return (Boolean) value ? 1L : 0L;
+            return (Boolean) value ? "1" : "0";
+        } else if (value instanceof Float) {
+            // Store a double or a string instead of Float serialized object.
+            if (compact)
+                return ((Float) value).doubleValue();
+            return ((Float) value).toString();
+        } else if (value instanceof Integer) {
+            // Convert integer into long value
+            return ((Integer) value).longValue();
+        } else if (value instanceof Short) {
+            // Convert short into long value
+            return ((Short) value).longValue();
+        } else if (value instanceof BigDecimal) {
+            // Store unscaled value and scale or a string instead of BigDecimal serialized object.
+            if (compact)
+                return encodeBigDecimal((BigDecimal) value);
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Timestamp) {
+            // Get timestamp time value
+            return ((Timestamp) value).getTime();
+        }
+        // Double is kept as is. Repository stores it as double instead of serialized object.
+        return value;
+    }
+
+    // Compact BigDecimal: [unscaled value, scale] if the unscaled value fits in a long, otherwise packed bytes.
+    private static Object encodeBigDecimal(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64)
+            return Arrays.asList(unscaled.longValue(), (long) value.scale());
+        byte[] unscaledBytes = unscaled.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(5 + unscaledBytes.length);
+        buffer.put(BIG_DECIMAL_FORMAT).putInt(value.scale()).put(unscaledBytes);
+        return buffer.array();
+    }
+
+    private static BigDecimal decodeBigDecimal(Object value) {
+        if (value instanceof List) {
+            List<?> parts = (List<?>) value;
+            return BigDecimal.valueOf(((Number) parts.get(0)).longValue(), ((Number) parts.get(1)).intValue());
+        } else if (value instanceof byte[]) {
+            ByteBuffer buffer = ByteBuffer.wrap((byte[]) value);
+            if (buffer.get() != BIG_DECIMAL_FORMAT)
+                throw new IllegalStateException("Unknown BigDecimal format");
+            int scale = buffer.getInt();
+            byte[] unscaledBytes = new byte[buffer.remaining()];
+            buffer.get(unscaledBytes);
+            return new BigDecimal(new BigInteger(unscaledBytes), scale);
+        } else if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        // Legacy string encoding.
+        return new BigDecimal((String) value);
+    }
+
     /**
      *  Clear the object and reset it.
      */
     public void clear() {
         bins.clear();
-        valueChangeStatus.clear();
+        clearValueChangeStatus();
+        decoder = null;
+        encodedFields = null;
         isFromDb = false;
         generation = 0;
         expiration = 0;
         modified = false;
         mutable = true;
+        partial = false;
     }
 
     /**
@@ -406,10 +595,11 @@ public abstract class Entity<T> implements Serializable, Comparable<Entity>, Clo
     }
 
     /**
-     * Object entry set for all (key, value) pairs.
+     * Object entry set for all (key, value) pairs. Encoded values read from the database are decoded first.
      * @return
      */
     public Set<Map.Entry<String, Object>> entrySet() {
+        decodeAll();
         return Collections.unmodifiableSet(bins.entrySet());
     }
 
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.model;
+
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per domain class metadata registry. The key name and the default constructor of a model class are resolved
+ * once using reflection and cached. Entity internals (bins, change status, generation, expiration) are accessed
+ * directly as this class lives in the same package as Entity, so repository calls do not need any reflection.
+ */
+public final class EntityMetadata<T extends Entity> {
+    // Name of the static key name attribute declared by model classes.
+    private final static String KEY_NAME_FIELD = "keyName";
+    // Name of the optional static map of field names to short bin names declared by model classes.
+    private final static String BIN_ALIASES_FIELD = "binAliases";
+    // Aerospike bin name length limit.
+    public final static int MAX_BIN_NAME_LENGTH = 14;
+
+    // Registry of resolved metadata by domain class.
+    private final static ConcurrentMap<Class<?>, EntityMetadata<?>> registry = new ConcurrentHashMap<Class<?>, EntityMetadata<?>>();
+
+    // Domain class
+    private final Class<T> domainType;
+    // Primary key bin name
+    private final String keyName;
+    // Cached default constructor
+    private final Constructor<T> constructor;
+    // Bin names by field name and field names by bin name. Empty if the class does not declare aliases.
+    private final Map<String, String> binNames;
+    private final Map<String, String> fieldNames;
+
+    @SuppressWarnings("unchecked")
+    private EntityMetadata(Class<T> domainType) {
+        this.domainType = domainType;
+        this.keyName = (String) resolveStaticField(domainType, KEY_NAME_FIELD);
+        this.constructor = resolveConstructor(domainType);
+        Map<String, String> aliases = (Map<String, String>) resolveStaticField(domainType, BIN_ALIASES_FIELD);
+        this.binNames = aliases != null ? new HashMap<String, String>(aliases) : Collections.<String, String>emptyMap();
+        this.fieldNames = invertAliases(domainType, this.binNames);
+    }
+
+    /**
+     * Gets the metadata for a given domain class. Metadata is resolved on first use and cached.
+     * @param domainType Domain class
+     * @return metadata
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Entity> EntityMetadata<T> forClass(Class<T> domainType) {
+        Assert.notNull(domainType, "Domain type cannot be null");
+        EntityMetadata<?> metadata = registry.get(domainType);
+        if (metadata == null) {
+            metadata = new EntityMetadata<T>(domainType);
+            EntityMetadata<?> existing = registry.putIfAbsent(domainType, metadata);
+            if (existing != null)
+                metadata = existing;
+        }
+        return (EntityMetadata<T>) metadata;
+    }
+
+    // Walk the class hierarchy once to find a static field value.
+    private static Object resolveStaticField(Class<?> domainType, String name) {
+        Class<?> clazz = domainType;
+        while (clazz != null && clazz != Object.class) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                if (!Modifier.isStatic(field.getModifiers()))
+                    throw new IllegalStateException(name + " must be a static field in " + clazz.getName());
+                field.setAccessible(true);
+                return field.get(null);
+            } catch (NoSuchFieldException e) {
+                clazz = clazz.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return null;
+    }
+
+    // Validate bin aliases and build the reverse map.
+    private static Map<String, String> invertAliases(Class<?> domainType, Map<String, String> binNames) {
+        if (binNames.isEmpty())
+            return Collections.emptyMap();
+        Map<String, String> fieldNames = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : binNames.entrySet()) {
+            String binName = entry.getValue();
+            if (binName == null || binName.isEmpty() || binName.length() > MAX_BIN_NAME_LENGTH)
+                throw new IllegalStateException("Invalid bin name " + binName + " for field " + entry.getKey() + " in " + domainType.getName());
+            if (fieldNames.put(binName, entry.getKey()) != null)
+                throw new IllegalStateException("Bin name " + binName + " is used for more than one field in " + domainType.getName());
+        }
+        return fieldNames;
+    }
+
+    private static <T> Constructor<T> resolveConstructor(Class<T> domainType) {
+        try {
+            Constructor<T> constructor = domainType.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(domainType.getName() + " must have a default constructor", e);
+        }
+    }
+
+    public Class<T> getDomainType() {
+        return domainType;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+
+    public boolean hasBinAliases() {
+        return !binNames.isEmpty();
+    }
+
+    // Bin names by field name.
+    public Map<String, String> getBinAliases() {
+        return Collections.unmodifiableMap(binNames);
+    }
+
+    /**
+     * Gets the database bin name of a field.
+     * @param fieldName field name used by the model class
+     * @return bin name
+     */
+    public String toBinName(String fieldName) {
+        String binName = binNames.get(fieldName);
+        return binName != null ? binName : fieldName;
+    }
+
+    /**
+     * Gets the field name of a database bin.
+     * @param binName bin name
+     * @return field name used by the model class
+     */
+    public String toFieldName(String binName) {
+        String fieldName = fieldNames.get(binName);
+        return fieldName != null ? fieldName : binName;
+    }
+
+    /**
+     * Renames record bins to field names. Bins stored under the field name by records written before aliases
+     * were declared are kept, unless the record also has the aliased bin.
+     * @param bins record bins
+     * @return bins by field name
+     */
+    public Map<String, Object> toFieldNames(Map<String, Object> bins) {
+        if (bins == null || fieldNames.isEmpty())
+            return bins;
+        Map<String, Object> result = new HashMap<String, Object>(bins.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> entry : bins.entrySet()) {
+            if (!fieldNames.containsKey(entry.getKey()))
+                result.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Object> entry : bins.entrySet()) {
+            String fieldName = fieldNames.get(entry.getKey());
+            if (fieldName != null)
+                result.put(fieldName, entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new empty instance of the domain class.
+     * @return new entity
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public T newInstance() throws InstantiationException, IllegalAccessException {
+        try {
+            return constructor.newInstance();
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            InstantiationException ie = new InstantiationException(e.getCause() != null ? e.getCause().toString() : e.toString());
+            ie.initCause(e.getCause());
+            throw ie;
+        }
+    }
+
+    /**
+     * Creates a new instance and binds record data to it.
+     * @param bins record bins
+     * @param generation record generation
+     * @param expiration record expiration
+     * @return entity
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public T newInstance(Map<String, Object> bins, int generation, int expiration) throws InstantiationException, IllegalAccessException {
+        T entity = newInstance();
+        bind(entity, bins, generation, expiration);
+        return entity;
+    }
+
+    /**
+     * Binds record data to an entity. Bins are used as-is without copying.
+     * @param entity entity
+     * @param bins record bins
+     * @param generation record generation
+     * @param expiration record expiration
+     */
+    public void bind(T entity, Map<String, Object> bins, int generation, int expiration) {
+        entity.bins = bins != null ? bins : new HashMap<String, Object>();
+        entity.generation = generation;
+        entity.expiration = expiration;
+        entity.isFromDb = !(generation == 0 && expiration == 0);
+    }
+
+    /**
+     * Sets the decoder of bins that are still in their database form. Values are decoded when a field is first read.
+     * @param entity entity
+     * @param decoder bin decoder
+     */
+    public void setDecoder(T entity, BinDecoder decoder) {
+        entity.setDecoder(decoder);
+    }
+
+    /**
+     * Checks if a field still holds the encoded value read from the database.
+     * @param entity entity
+     * @param fieldName field name
+     * @return true if the value was read from the database and not accessed or changed since
+     */
+    public boolean isEncoded(T entity, String fieldName) {
+        return entity.encodedFields != null && entity.encodedFields.contains(fieldName);
+    }
+
+    /**
+     * Rebinds a reused entity to the next record. Change tracking and the partial flag are reset.
+     * @param entity reused entity
+     * @param bins record bins
+     * @param generation record generation
+     * @param expiration record expiration
+     * @param decoder bin decoder
+     */
+    public void rebind(T entity, Map<String, Object> bins, int generation, int expiration, BinDecoder decoder) {
+        bind(entity, bins, generation, expiration);
+        entity.setDecoder(decoder);
+        entity.clearValueChangeStatus();
+        entity.modified = false;
+        entity.partial = false;
+        entity.reused = true;
+    }
+
+    /**
+     * Marks an entity as partially read.
+     * @param entity entity
+     */
+    public void markPartial(T entity) {
+        entity.partial = true;
+    }
+
+    /**
+     * Gets the primary key value of an entity.
+     * @param entity entity
+     * @return key value
+     */
+    public String getKeyValue(T entity) {
+        return entity.bins == null ? null : (String) entity.bins.get(keyName);
+    }
+
+    public Map<String, Object> getBins(T entity) {
+        return entity.bins;
+    }
+
+    public HashSet<String> getChangedFields(T entity) {
+        return entity.getValueChangeStatus();
+    }
+
+    public int getGeneration(T entity) {
+        return entity.generation;
+    }
+
+    public int getExpiration(T entity) {
+        return entity.expiration;
+    }
+
+    public boolean isFromDb(T entity) {
+        return entity.isFromDb;
+    }
+}
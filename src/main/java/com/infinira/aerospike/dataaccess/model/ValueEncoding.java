@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.model;
+
+/**
+ * Storage encoding of Float, BigDecimal and Boolean values, chosen per entity class by overriding
+ * Entity.getValueEncoding(). Getters read values of every encoding, so a class can switch to a newer
+ * encoding without migrating existing records.
+ */
+public enum ValueEncoding {
+    /**
+     * Version 1. Float and BigDecimal are stored as strings and Boolean as the strings "0" and "1".
+     */
+    STRING(1),
+    /**
+     * Version 2. Float is stored as a double bin and Boolean as an integer bin (0 or 1). BigDecimal is stored as a
+     * list of unscaled value and scale, or as packed bytes if the unscaled value does not fit in a long.
+     */
+    COMPACT(2);
+
+    private final int version;
+
+    ValueEncoding(int version) {
+        this.version = version;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
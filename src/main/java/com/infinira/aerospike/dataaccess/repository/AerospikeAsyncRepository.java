@@ -0,0 +1,494 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.ExistsListener;
+import com.aerospike.client.listener.RecordArrayListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generic asynchronous repository implementation on top of the Aerospike async client. Entities are mapped
+ * exactly like AerospikeRepository, so both repositories can be used on the same set.
+ * The number of commands in flight is limited per repository. When the limit is reached, the calling thread
+ * waits for a slot (back pressure) instead of queueing unbounded work.
+ * Writes through this repository bypass the near cache and the key filter of AerospikeRepository instances
+ * on the same set: cached entities stay stale until their time to live expires, and new keys are reported
+ * missing until the key filter is rebuilt. Do not enable either on a set that is also written asynchronously.
+ */
+public class AerospikeAsyncRepository<T extends Entity> implements AsyncRepository<T> {
+    protected final static Logger logger = LoggerFactory.getLogger(AerospikeAsyncRepository.class);
+    //Aerospike async client object. Obtained by the constructor, so that a cluster that cannot be reached fails
+    //the construction of this repository only, and a later construction tries again.
+    private final AsyncClient asyncClient;
+
+    // Domain class
+    private final Class<T> domainType;
+    // Name space
+    private final String namespace;
+    // Set name (User class name as setname)
+    private final String setName;
+    // Entity to bin mapper
+    private final EntityBinMapper<T> mapper;
+    // In-flight command limit
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    /**
+     * Default constructor.
+     * @param domainType
+     */
+    public AerospikeAsyncRepository(Class<T> domainType) {
+        this(null, domainType);
+    }
+
+    /**
+     * Constructor
+     * @param namespace Name space
+     * @param domainType Domain type (T.class)
+     */
+    public AerospikeAsyncRepository(String namespace, Class<T> domainType) {
+        this(namespace, domainType, null);
+    }
+
+    /**
+     * Constructor
+     * @param namespace name space for this object
+     * @param domainType class domain type
+     * @param setName set name. Default is simple class name.
+     */
+    public AerospikeAsyncRepository(String namespace, Class<T> domainType, String setName) {
+        this(namespace, domainType, setName, AerospikeClientUtil.getAsyncMaxCommands());
+    }
+
+    /**
+     * Constructor
+     * @param namespace name space for this object
+     * @param domainType class domain type
+     * @param setName set name. Default is simple class name.
+     * @param maxInFlight maximum number of commands in flight issued by this repository.
+     * @throws IllegalStateException if the async client cannot be created
+     */
+    public AerospikeAsyncRepository(String namespace, Class<T> domainType, String setName, int maxInFlight) {
+        Assert.notNull(domainType, "Domain type cannot be null");
+        Assert.isTrue(maxInFlight > 0, "Max in-flight commands must be greater than 0");
+        this.asyncClient = AerospikeClientUtil.getAsyncClient();
+        this.domainType = domainType;
+        this.mapper = new EntityBinMapper<T>(domainType);
+        // If name space is null or empty, use default name space.
+        if (namespace == null || namespace.length() == 0)
+            this.namespace = AerospikeClientUtil.getDefaultNamespace();
+        else this.namespace = namespace;
+        if (setName != null && setName.length() > 0)
+            this.setName = setName;
+        else
+            // Set setName as Class simplename.
+            this.setName = domainType.getSimpleName();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Gets the number of commands currently in flight.
+     * @return in-flight commands
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Enables compression of large String and byte[] values on write. Compressed values are always
+     * decompressed on read, so records written with compression stay readable when it is disabled.
+     * @param compressor compressor or null to disable compression
+     */
+    public void setCompressor(BinCompressor compressor) {
+        mapper.setCompressor(compressor);
+    }
+
+    /**
+     * Gets the compressor for statistics.
+     * @return compressor or null if compression is not enabled.
+     */
+    public BinCompressor getCompressor() {
+        return mapper.getCompressor();
+    }
+
+    /**
+     * A single asynchronous command. Holds an in-flight slot from start until the future is completed.
+     * @param <R> result type
+     */
+    private abstract class Command<R> {
+        final CompletableFuture<R> future = new CompletableFuture<R>();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        CompletableFuture<R> start() {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return future;
+            }
+            try {
+                execute();
+            } catch (Exception e) {
+                fail(e);
+            }
+            return future;
+        }
+
+        abstract void execute() throws Exception;
+
+        void succeed(R result) {
+            if (done.compareAndSet(false, true)) {
+                inFlight.release();
+                future.complete(result);
+            }
+        }
+
+        void fail(Throwable t) {
+            if (done.compareAndSet(false, true)) {
+                inFlight.release();
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    // Record listener that converts the record into an entity.
+    private class EntityListener implements RecordListener {
+        private final Command<T> command;
+
+        EntityListener(Command<T> command) {
+            this.command = command;
+        }
+
+        @Override
+        public void onSuccess(Key key, Record record) {
+            try {
+                command.succeed(mapper.toEntity(record));
+            } catch (Exception e) {
+                command.fail(e);
+            }
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            command.fail(e);
+        }
+    }
+
+    //Insert/Save/Update a record asynchronously.
+    private CompletableFuture<Void> change(final WritePolicy policy, final T object, final boolean changedOnly) {
+        Assert.notNull(object, "Object to save must not be null!");
+        return new Command<Void>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, mapper.getKeyValue(object));
+                asyncClient.put(policy, new WriteListener() {
+                    @Override
+                    public void onSuccess(Key key) {
+                        succeed(null);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, key, mapper.toBins(object, changedOnly));
+            }
+        }.start();
+    }
+
+    // Insert a new record. CREATE_ONLY :  Create only if it does not exists
+    @Override
+    public CompletableFuture<Void> insert(T entity) {
+        return change(AerospikeClientUtil.getInsertPolicy(), entity, false);
+    }
+
+    // Save a record. UPDATE :  Create or update record
+    @Override
+    public CompletableFuture<Void> save(T entity) {
+        return change(asyncClient.writePolicyDefault, entity, false);
+    }
+
+    // Update a record. UPDATE_ONLY :  Update record only.
+    @Override
+    public CompletableFuture<Void> update(T entity) {
+        return change(AerospikeClientUtil.getUpdatePolicy(), entity, true);
+    }
+
+    /**
+     * Gets a given field value
+     * @param keyValue Primary key value.
+     * @param fieldName Field name
+     * @return future field value
+     */
+    @Override
+    public CompletableFuture<Object> get(final String keyValue, final String fieldName) {
+        if (keyValue == null)
+            return CompletableFuture.completedFuture(null);
+        return new Command<Object>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, keyValue);
+                final String binName = mapper.toBinName(fieldName);
+                asyncClient.get(asyncClient.readPolicyDefault, new RecordListener() {
+                    @Override
+                    public void onSuccess(Key key, Record record) {
+                        succeed(record != null ? mapper.fromBinValue(record.getValue(binName)) : null);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, key, binName);
+            }
+        }.start();
+    }
+
+    /**
+     * Gets a list of fields
+     * @param keyValue Primary Keyvalue
+     * @param fieldNames list of field names to retrieve.
+     * @return future map of field names and field values.
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> get(final String keyValue, final String... fieldNames) {
+        if (keyValue == null)
+            return CompletableFuture.completedFuture(null);
+        return new Command<Map<String, Object>>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, keyValue);
+                final String[] binNames = mapper.toBinNames(fieldNames);
+                asyncClient.get(asyncClient.readPolicyDefault, new RecordListener() {
+                    @Override
+                    public void onSuccess(Key key, Record record) {
+                        if (record == null) {
+                            succeed(null);
+                            return;
+                        }
+                        Map<String, Object> result = new HashMap<String, Object>();
+                        for (int i = 0; i < fieldNames.length; i++) {
+                            result.put(fieldNames[i], mapper.fromBinValue(record.getValue(binNames[i])));
+                        }
+                        succeed(result);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, key, binNames);
+            }
+        }.start();
+    }
+
+    /**
+     * Finds an entity for a given key value
+     * @param keyValue  key value
+     * @return future entity. Completes with null if the record does not exist.
+     */
+    @Override
+    public CompletableFuture<T> findOne(final String keyValue) {
+        if (keyValue == null)
+            return CompletableFuture.completedFuture(null);
+        return new Command<T>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, keyValue);
+                asyncClient.get(asyncClient.readPolicyDefault, new EntityListener(this), key);
+            }
+        }.start();
+    }
+
+    /**
+     * Checks if an entity exists corresponding to a given key value
+     * @param keyValue primary key value.
+     * @return future exists flag
+     */
+    @Override
+    public CompletableFuture<Boolean> exists(final String keyValue) {
+        if (keyValue == null)
+            return CompletableFuture.completedFuture(false);
+        return new Command<Boolean>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, keyValue);
+                asyncClient.exists(asyncClient.readPolicyDefault, new ExistsListener() {
+                    @Override
+                    public void onSuccess(Key key, boolean exists) {
+                        succeed(exists);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, key);
+            }
+        }.start();
+    }
+
+    /**
+     * Find all entities for a given set of keyValues with a single batch command. Blank key values are ignored.
+     * @param keyValues List of key value strings
+     * @return future list of entities that exist.
+     */
+    @Override
+    public CompletableFuture<ArrayList<T>> findAll(final String[] keyValues) {
+        if (keyValues == null || keyValues.length == 0)
+            return CompletableFuture.completedFuture(null);
+        // create an array of keys, skipping blank key values.
+        int count = 0;
+        for (String keyValue : keyValues) {
+            if (keyValue != null && keyValue.trim().length() != 0) count++;
+        }
+        final Key[] keys = new Key[count];
+        int i = 0;
+        for (String keyValue : keyValues) {
+            if (keyValue != null && keyValue.trim().length() != 0)
+                keys[i++] = new Key(namespace, setName, keyValue);
+        }
+        if (keys.length == 0)
+            return CompletableFuture.completedFuture(new ArrayList<T>());
+        return new Command<ArrayList<T>>() {
+            @Override
+            void execute() {
+                asyncClient.get(AerospikeClientUtil.getBatchPolicy(), new RecordArrayListener() {
+                    @Override
+                    public void onSuccess(Key[] keys, Record[] records) {
+                        try {
+                            ArrayList<T> entityList = new ArrayList<T>();
+                            for (Record record : records) {
+                                if (record != null)
+                                    entityList.add(mapper.toEntity(record));
+                            }
+                            succeed(entityList);
+                        } catch (Exception e) {
+                            fail(e);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, keys);
+            }
+        }.start();
+    }
+
+    // operate on bin values and return the updated entity.
+    // opType: APPEND, PREPEND, ADD
+    private CompletableFuture<T> operate(final T object, final Operation... operations) {
+        Assert.notNull(object, "Object to operate on must not be null!");
+        return new Command<T>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, mapper.getKeyValue(object));
+                asyncClient.operate(null, new EntityListener(this), key, operations);
+            }
+        }.start();
+    }
+
+    @Override
+    public CompletableFuture<T> prepend(T object, String fieldName, String value) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(object, mapper.toOperation("PREPEND", new Bin(binName, value)), Operation.get(binName));
+    }
+
+    @Override
+    public CompletableFuture<T> append(T object, String fieldName, String value) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(object, mapper.toOperation("APPEND", new Bin(binName, value)), Operation.get(binName));
+    }
+
+    @Override
+    public CompletableFuture<T> add(T object, String fieldName, int value) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(object, mapper.toOperation("ADD", new Bin(binName, value)), Operation.get(binName));
+    }
+
+    @Override
+    public CompletableFuture<T> prepend(T object, Map<String, Object> values) {
+        return operate(object, mapper.toOperations("PREPEND", values));
+    }
+
+    @Override
+    public CompletableFuture<T> append(T object, Map<String, Object> values) {
+        return operate(object, mapper.toOperations("APPEND", values));
+    }
+
+    @Override
+    public CompletableFuture<T> add(T object, Map<String, Object> values) {
+        return operate(object, mapper.toOperations("ADD", values));
+    }
+
+    /**
+     * Deletes entity
+     * @param keyValue  Primary key value
+     * @return future flag which is true if the record existed.
+     */
+    @Override
+    public CompletableFuture<Boolean> delete(final String keyValue) {
+        if (keyValue == null || keyValue.trim().length() == 0)
+            return CompletableFuture.completedFuture(false);
+        return new Command<Boolean>() {
+            @Override
+            void execute() {
+                Key key = new Key(namespace, setName, keyValue);
+                asyncClient.delete(null, new DeleteListener() {
+                    @Override
+                    public void onSuccess(Key key, boolean existed) {
+                        succeed(existed);
+                    }
+
+                    @Override
+                    public void onFailure(AerospikeException e) {
+                        fail(e);
+                    }
+                }, key);
+            }
+        }.start();
+    }
+}
@@ -19,6 +19,9 @@ package com.infinira.aerospike.dataaccess.repository;
 
 import com.aerospike.client.AerospikeClient;
 import com.aerospike.client.Value;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.async.MaxCommandAction;
 import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.ClientPolicy;
 import com.aerospike.client.policy.RecordExistsAction;
@@ -29,17 +32,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Client utility class
  */
 public class AerospikeClientUtil {
-    private final Logger logger = LoggerFactory.getLogger(AerospikeClientUtil.class);
+    private final static Logger logger = LoggerFactory.getLogger(AerospikeClientUtil.class);
     private static AerospikeConfig aerospikeConfig;
 
     // Aerospike client and queryEngine variables.
     private static AerospikeClient client = null;
     private static QueryEngine queryEngine = null;
+    // Asynchronous client. Created on first use.
+    private static AsyncClient asyncClient = null;
 
     // Insert, Update and Batch policies.
     private static WritePolicy insertPolicy;
@@ -100,6 +109,72 @@ public class AerospikeClientUtil {
         return null;
     }
 
+    /**
+     * Get cached Aerospike asynchronous client. The asynchronous client has its own connection pool and
+     * uses the same hosts and default policies as the synchronous client.
+     * @return async client
+     * @throws IllegalStateException if the client cannot be created
+     */
+    public static AsyncClient getAsyncClient() {
+        // If client is already created, return client.
+        if (asyncClient != null) return asyncClient;
+        synchronized(lockObject) {
+            if (asyncClient != null) return asyncClient;
+            try {
+                // Make sure configuration is loaded and insert/update policies are initialized.
+                if (getClient() == null)
+                    throw new IllegalStateException("Aerospike client is not available");
+                ClientPolicy clientPolicy = aerospikeConfig.getClientPolicy();
+                AsyncClientPolicy asyncClientPolicy = new AsyncClientPolicy();
+                if (clientPolicy != null) {
+                    asyncClientPolicy.user = clientPolicy.user;
+                    asyncClientPolicy.password = clientPolicy.password;
+                    asyncClientPolicy.timeout = clientPolicy.timeout;
+                    asyncClientPolicy.maxSocketIdle = clientPolicy.maxSocketIdle;
+                    asyncClientPolicy.tendInterval = clientPolicy.tendInterval;
+                    asyncClientPolicy.failIfNotConnected = clientPolicy.failIfNotConnected;
+                    asyncClientPolicy.requestProleReplicas = clientPolicy.requestProleReplicas;
+                    asyncClientPolicy.readPolicyDefault = clientPolicy.readPolicyDefault;
+                    asyncClientPolicy.writePolicyDefault = clientPolicy.writePolicyDefault;
+                    asyncClientPolicy.batchPolicyDefault = clientPolicy.batchPolicyDefault;
+                    asyncClientPolicy.scanPolicyDefault = clientPolicy.scanPolicyDefault;
+                    asyncClientPolicy.queryPolicyDefault = clientPolicy.queryPolicyDefault;
+                    asyncClientPolicy.infoPolicyDefault = clientPolicy.infoPolicyDefault;
+                }
+                // Block the caller when the maximum number of commands are in flight.
+                asyncClientPolicy.asyncMaxCommands = aerospikeConfig.getAsyncMaxCommands();
+                asyncClientPolicy.asyncMaxCommandAction = MaxCommandAction.BLOCK;
+                // Run listener callbacks in a separate pool, so that future completions never run on the selector thread.
+                asyncClientPolicy.asyncTaskThreadPool = newDaemonThreadPool("aerospike-async-");
+                asyncClient = new AsyncClient(asyncClientPolicy, aerospikeConfig.getHosts());
+                return asyncClient;
+            } catch (Exception ex) {
+                logger.error("Cannot create Aerospike async client: " + ex.getMessage());
+                throw ex instanceof IllegalStateException ? (IllegalStateException) ex
+                        : new IllegalStateException("Cannot create Aerospike async client", ex);
+            }
+        }
+    }
+
+    // Cached thread pool with daemon threads.
+    static ExecutorService newDaemonThreadPool(String namePrefix) {
+        return Executors.newCachedThreadPool(newDaemonThreadFactory(namePrefix));
+    }
+
+    // Thread factory for named daemon threads.
+    static ThreadFactory newDaemonThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger sequence = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, namePrefix + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
     // Set of getter methods.
 
     public static String getDefaultNamespace() {
@@ -122,6 +197,11 @@ public class AerospikeClientUtil {
         else return null;
     }
 
+    public static int getAsyncMaxCommands() {
+        if (aerospikeConfig != null) return aerospikeConfig.getAsyncMaxCommands();
+        else return 200;
+    }
+
     public static QueryEngine getQueryEngine() {
         if (queryEngine == null)
             queryEngine = new QueryEngine(client);
@@ -152,6 +232,8 @@ public class AerospikeClientUtil {
      * Closes the client.
      */
     public static void closeClient() {
+        if (asyncClient != null)
+            asyncClient.close();
         client.close();
     }
 }
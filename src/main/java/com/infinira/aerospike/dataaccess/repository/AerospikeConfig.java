@@ -28,6 +28,8 @@ public class AerospikeConfig {
 	private String defaultNameSpace="test";
 	private AerospikeHost[] aerospikeHosts;
 	private ClientPolicy clientPolicy;
+	// Maximum number of concurrent asynchronous commands per async client.
+	private int asyncMaxCommands = 200;
 
 	public AerospikeConfig() {
 	}
@@ -54,6 +56,14 @@ public class AerospikeConfig {
 		this.clientPolicy = clientPolicy;
 	}
 
+	public int getAsyncMaxCommands() {
+		return asyncMaxCommands;
+	}
+
+	public void setAsyncMaxCommands(int asyncMaxCommands) {
+		this.asyncMaxCommands = asyncMaxCommands;
+	}
+
 	public AerospikeHost[] getAerospikeHosts() {
 		 return aerospikeHosts;
 	}
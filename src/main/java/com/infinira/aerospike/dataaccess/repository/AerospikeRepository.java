@@ -24,15 +24,26 @@
 package com.infinira.aerospike.dataaccess.repository;
 
 import com.aerospike.client.*;
+import com.aerospike.client.cdt.ListOperation;
+import com.aerospike.client.cdt.MapOperation;
+import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.cdt.MapReturnType;
 import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.client.query.Filter;
 import com.aerospike.client.query.IndexType;
 import com.aerospike.client.query.KeyRecord;
+import com.aerospike.client.query.ResultSet;
 import com.aerospike.client.query.Statement;
 import com.aerospike.client.task.IndexTask;
 import com.aerospike.helper.query.KeyRecordIterator;
 import com.aerospike.helper.query.Qualifier;
+import com.infinira.aerospike.dataaccess.exception.BulkWriteException;
 import com.infinira.aerospike.dataaccess.model.Entity;
+import com.infinira.aerospike.dataaccess.util.RateLimiter;
+import com.infinira.aerospike.dataaccess.util.SingleFlight;
 import com.infinira.aerospike.dataaccess.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +52,11 @@ import org.springframework.util.Assert;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.AtomicLong;
 
 // Generic repository implementation
 public class AerospikeRepository<T extends Entity> implements Repository<T> {
@@ -49,6 +65,10 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     private final static AerospikeClient aerospikeClient = AerospikeClientUtil.getClient();
     //Default name space from configuration file.
     private final static String DEFAULT_NAMESPACE = AerospikeClientUtil.getDefaultNamespace();
+    // Default number of compare-and-update retries on concurrent changes.
+    public final static int DEFAULT_CAS_MAX_RETRIES = 10;
+    // Maximum compare-and-update backoff between retries.
+    private final static long CAS_MAX_BACKOFF_MILLIS = 100;
 
     // Domain class
     private final Class<T> domainType;
@@ -56,6 +76,23 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     private final String namespace;
     // Set name (User class name as setname)
     private final String setName;
+    // Entity to bin mapper (cached key name, constructor and entity internals accessors)
+    private final EntityBinMapper<T> mapper;
+    // Optional write-behind buffer for save and update calls.
+    private volatile WriteBehindBuffer<T> writeBehindBuffer;
+    // Optional hedged reader for single record reads.
+    private volatile HedgedReader hedgedReader;
+    private volatile NearCache<T> nearCache;
+    private volatile KeyFilter<T> keyFilter;
+    private volatile SingleFlight<Record> singleFlight;
+    // Batch reader of findAll(keyValues). Created on first use.
+    private BatchReader<T> batchReader;
+    // Bulk writer of insertAll, saveAll and updateAll. Created on first use.
+    private BulkWriter<T> bulkWriter;
+    // Compare-and-update statistics
+    private final AtomicLong casUpdates = new AtomicLong();
+    private final AtomicLong casRetries = new AtomicLong();
+    private final AtomicLong casFailures = new AtomicLong();
 
 
     /**
@@ -84,6 +121,7 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     public AerospikeRepository(String namespace, Class<T> domainType, String setName) {
         Assert.notNull(domainType, "Domain type cannot be null");
         this.domainType = domainType;
+        this.mapper = new EntityBinMapper<T>(domainType);
         // If name space is null or empty, use default name space.
         if(namespace == null || namespace.length() == 0)
             this.namespace = AerospikeClientUtil.getDefaultNamespace();
@@ -102,6 +140,9 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     @Override
     public void clearSet() throws Exception {
         SetDelete.clearSet(namespace,setName);
+        NearCache<T> cache = nearCache;
+        if (cache != null)
+            cache.clear();
     }
 
     /**
@@ -115,8 +156,9 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         Assert.notNull(indexName);
         Assert.notNull(binName);
         Assert.notNull(indexType);
-        IndexTask task = aerospikeClient.createIndex(null, namespace, setName, indexName, binName, indexType);
+        IndexTask task = aerospikeClient.createIndex(null, namespace, setName, indexName, mapper.toBinName(binName), indexType);
         task.waitTillComplete();
+        getQueryPlanner().invalidate();
     }
 
     /**
@@ -126,43 +168,49 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     @Override
     public void dropIndex(String indexName) {
         aerospikeClient.dropIndex(null, namespace, setName, indexName);
+        getQueryPlanner().invalidate();
+    }
+
+    // Gets the primary key value of an entity.
+    String getKeyValue(T object) {
+        return mapper.getKeyValue(object);
+    }
+
+    // Create a Key. Key maps to unique event id
+    Key createKey(String keyValue) {
+        return new Key(namespace, setName, keyValue);
     }
 
     //Insert/Save/Update a new record in the Aerospike db.
-    private void change(String opType, T object) {
-        //Entity entity = object;
-        // Use reflection to get key, bins and valueChangeStatus
-        String keyName =  Utils.get(object, "keyName");
-        HashMap<String,Object> bins =  Utils.get(object, "bins");
-        HashSet<String> changedFields =  Utils.get(object, "valueChangeStatus");
-        int generation =   Utils.get(object, "generation");
+    void change(String opType, T object) {
+        change(opType, object, true);
+    }
+
+    // Insert/Save/Update a record. Saves and updates go to the write-behind buffer if it is enabled and allowed.
+    void change(String opType, T object, boolean writeBehind) {
         // Get the keyvalue
-        String keyValue = (String)bins.get(keyName);
-        // Create a Key. Key maps to unique event id
-        Key key = new Key(namespace, setName, keyValue);
-        // Find fields to save.
-        Set<String> fieldNames;
-        if(opType.equals("UPDATE") && generation > 0)
-            fieldNames = changedFields;             //It is enough to update only changed fields, not all.
-        else
-            fieldNames = bins.keySet();             //For insert and update
-
-        // Create Bin array
-        Bin[] binArray = new Bin[fieldNames.size()];
-        //Only store columns that are not null.
-        int i = 0;
-        for (Object fieldName : fieldNames) {
-            if (fieldName != null) {
-                Object obj = object.getValue((String) fieldName);
-                // Special consideration for double to store it as double instead of serialized object.
-                if(obj instanceof  Double) {
-                    //System.out.println("Debug for double:" + obj);
-                    double dbl = ((Double) obj).doubleValue();
-                    binArray[i++] = new Bin((String) fieldName, dbl);//object.getValue((String) fieldName));
-                } else
-                    binArray[i++] = new Bin((String) fieldName, object.getValue((String) fieldName));
-            }
+        String keyValue = mapper.getKeyValue(object);
+        // It is enough to update only changed fields, not all.
+        Bin[] binArray = mapper.toBins(object, opType.equals("UPDATE"));
+        addKey(keyValue);
+        // Inserts must fail immediately if the record exists, so they are never buffered.
+        WriteBehindBuffer<T> buffer = writeBehindBuffer;
+        // A buffer closed by a concurrent disableWriteBehind() or close() rejects the change; write it directly.
+        // The buffer adds the key again when it is written.
+        boolean buffered = buffer != null && writeBehind && !opType.equals("INSERT")
+                && buffer.enqueue(opType, keyValue, binArray);
+        if (!buffered) {
+            // Buffered changes of the key must not overwrite this write later.
+            flushPending(keyValue);
+            write(opType, createKey(keyValue), binArray);
+            // A key filter rebuild that scanned before the write reached the server does not have the key.
+            addKey(keyValue);
         }
+        invalidate(keyValue);
+    }
+
+    // Write bins with the policy of a given op type.
+    void write(String opType, Key key, Bin[] binArray) {
         // Check the op type and follow
         if (opType.equals("INSERT"))        // CREATE_ONLY :  Create only if it does not exists
             aerospikeClient.put(AerospikeClientUtil.getInsertPolicy(), key, binArray);
@@ -172,6 +220,301 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
             aerospikeClient.put(AerospikeClientUtil.getUpdatePolicy(), key, binArray);
     }
 
+    /**
+     * Enables write-behind mode. Save and update calls are buffered, changes of the same key are merged and
+     * written by a background thread. Inserts and bulk writes (insertAll, saveAll, updateAll and BulkWriter) are
+     * always written immediately. Reads of a key with pending changes flush the buffer first, and deletes discard
+     * pending changes of the key.
+     * @param options write-behind options
+     */
+    public synchronized void enableWriteBehind(WriteBehindOptions options) {
+        if (writeBehindBuffer != null)
+            writeBehindBuffer.close();
+        writeBehindBuffer = new WriteBehindBuffer<T>(this, options);
+    }
+
+    /**
+     * Disables write-behind mode after writing all pending changes.
+     */
+    public synchronized void disableWriteBehind() {
+        if (writeBehindBuffer != null) {
+            WriteBehindBuffer<T> buffer = writeBehindBuffer;
+            writeBehindBuffer = null;
+            buffer.close();
+        }
+    }
+
+    /**
+     * Gets the write-behind buffer for statistics.
+     * @return write-behind buffer or null if write-behind mode is not enabled.
+     */
+    public WriteBehindBuffer<T> getWriteBehindBuffer() {
+        return writeBehindBuffer;
+    }
+
+    /**
+     * Writes all buffered changes. Does nothing if write-behind mode is not enabled.
+     */
+    public void flush() {
+        WriteBehindBuffer<T> buffer = writeBehindBuffer;
+        if (buffer != null)
+            buffer.flush();
+    }
+
+    /**
+     * Gets the database bin name of a field. Differs from the field name if the entity class declares bin aliases.
+     * @param fieldName field name
+     * @return bin name
+     */
+    public String getBinName(String fieldName) {
+        return mapper.toBinName(fieldName);
+    }
+
+    /**
+     * Moves bins written under field names before bin aliases were declared to their bin names. Reads of
+     * records that are not migrated yet still work. Records changed during the migration are skipped and
+     * picked up by the next run.
+     * @return number of migrated records
+     */
+    public long migrateBinAliases() {
+        final Map<String, String> aliases = mapper.getMetadata().getBinAliases();
+        final AtomicLong migrated = new AtomicLong();
+        if (aliases.isEmpty())
+            return 0;
+        aerospikeClient.scanAll(null, namespace, setName, new ScanCallback() {
+            public void scanCallback(Key key, Record record) throws AerospikeException {
+                List<Operation> operations = new ArrayList<Operation>();
+                for (Map.Entry<String, String> alias : aliases.entrySet()) {
+                    if (record.bins.containsKey(alias.getKey())) {
+                        // An aliased bin that already exists is newer than the old bin.
+                        if (!record.bins.containsKey(alias.getValue()))
+                            operations.add(Operation.put(new Bin(alias.getValue(), record.bins.get(alias.getKey()))));
+                        operations.add(Operation.put(Bin.asNull(alias.getKey())));
+                    }
+                }
+                if (operations.isEmpty())
+                    return;
+                WritePolicy policy = new WritePolicy(AerospikeClientUtil.getUpdatePolicy());
+                policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+                policy.generation = record.generation;
+                try {
+                    aerospikeClient.operate(policy, key, operations.toArray(new Operation[operations.size()]));
+                    migrated.incrementAndGet();
+                } catch (AerospikeException ae) {
+                    if (ae.getResultCode() != ResultCode.GENERATION_ERROR)
+                        throw ae;
+                    logger.warn("Record changed during bin alias migration, skipped: " + key);
+                }
+            }
+        });
+        return migrated.get();
+    }
+
+    /**
+     * Enables compression of large String and byte[] values on write. Compressed values are always
+     * decompressed on read, so records written with compression stay readable when it is disabled.
+     * @param compressor compressor or null to disable compression
+     */
+    public void setCompressor(BinCompressor compressor) {
+        mapper.setCompressor(compressor);
+    }
+
+    /**
+     * Gets the compressor for statistics.
+     * @return compressor or null if compression is not enabled.
+     */
+    public BinCompressor getCompressor() {
+        return mapper.getCompressor();
+    }
+
+    /**
+     * Enables hedged reads for findOne and get. A read that has not answered within the configured latency
+     * percentile is sent again to a replica and the first answer is used. Reads are sent with the asynchronous
+     * client. Requires requestProleReplicas in the client policy.
+     * @param options hedged read options
+     * @throws IllegalStateException if the asynchronous client cannot be created
+     */
+    public synchronized void enableHedgedReads(HedgedReadOptions options) {
+        hedgedReader = new HedgedReader(AerospikeClientUtil.getAsyncClient(), options);
+    }
+
+    /**
+     * Disables hedged reads.
+     */
+    public synchronized void disableHedgedReads() {
+        hedgedReader = null;
+    }
+
+    /**
+     * Gets the hedged reader for statistics.
+     * @return hedged reader or null if hedged reads are not enabled.
+     */
+    public HedgedReader getHedgedReader() {
+        return hedgedReader;
+    }
+
+    /**
+     * Enables the near cache for findOne. Cached entities are invalidated by every write through this repository,
+     * but not by writes of other clients; bound their staleness with the time to live and revalidation.
+     * @param options near cache options
+     */
+    public synchronized void enableNearCache(NearCacheOptions options) {
+        nearCache = new NearCache<T>(this, mapper, options);
+    }
+
+    /**
+     * Disables the near cache.
+     */
+    public synchronized void disableNearCache() {
+        nearCache = null;
+    }
+
+    /**
+     * Gets the near cache for statistics.
+     * @return near cache or null if it is not enabled.
+     */
+    public NearCache<T> getNearCache() {
+        return nearCache;
+    }
+
+    // Drops the cached record of a key after a write. Reads in flight started before the write, so later reads
+    // must not join them.
+    private void invalidate(String keyValue) {
+        if (keyValue == null)
+            return;
+        NearCache<T> cache = nearCache;
+        if (cache != null)
+            cache.invalidate(keyValue);
+        SingleFlight<Record> flight = singleFlight;
+        if (flight != null)
+            flight.forget(keyValue);
+    }
+
+    /**
+     * Enables the key filter, a Bloom filter of the keys of the set that lets findOne, get and exists answer
+     * definitely missing keys without a database call. Builds the filter with a keys-only scan before returning.
+     * Only writes through this repository add keys; keys written by other clients or AerospikeAsyncRepository
+     * are reported missing until the next rebuild.
+     * @param options key filter options
+     */
+    public synchronized void enableKeyFilter(KeyFilterOptions options) {
+        if (keyFilter != null)
+            keyFilter.close();
+        keyFilter = new KeyFilter<T>(this, namespace, setName, options);
+    }
+
+    /**
+     * Disables the key filter.
+     */
+    public synchronized void disableKeyFilter() {
+        if (keyFilter != null) {
+            KeyFilter<T> filter = keyFilter;
+            keyFilter = null;
+            filter.close();
+        }
+    }
+
+    /**
+     * Gets the key filter for statistics.
+     * @return key filter or null if it is not enabled.
+     */
+    public KeyFilter<T> getKeyFilter() {
+        return keyFilter;
+    }
+
+    // True if the key filter knows that a key does not exist.
+    private boolean isMissing(String keyValue) {
+        KeyFilter<T> filter = keyFilter;
+        return filter != null && !filter.mightExist(keyValue);
+    }
+
+    // Adds a key to the key filter before it is written, so that readers never miss it, and again after it is
+    // written, so that a rebuild running during the write does not drop it.
+    void addKey(String keyValue) {
+        KeyFilter<T> filter = keyFilter;
+        if (filter != null && keyValue != null)
+            filter.add(keyValue);
+    }
+
+    /**
+     * Enables coalescing of concurrent reads. While a read of a key is in flight, other reads of the same key and
+     * fields wait for its record instead of reading it again. Every caller gets its own copy of a shared record.
+     * Writes through this repository end the reads of the key in flight, so a read after a write never gets a
+     * record read before it.
+     */
+    public synchronized void enableSingleFlight() {
+        if (singleFlight == null)
+            singleFlight = new SingleFlight<Record>();
+    }
+
+    /**
+     * Disables coalescing of concurrent reads.
+     */
+    public synchronized void disableSingleFlight() {
+        singleFlight = null;
+    }
+
+    /**
+     * Gets the read coalescer for statistics.
+     * @return read coalescer or null if it is not enabled.
+     */
+    public SingleFlight<Record> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Releases resources held by this repository. Buffered changes are written first.
+     */
+    public void close() {
+        disableWriteBehind();
+        disableHedgedReads();
+        disableKeyFilter();
+        synchronized (this) {
+            if (batchReader != null) {
+                batchReader.close();
+                batchReader = null;
+            }
+            if (bulkWriter != null) {
+                bulkWriter.close();
+                bulkWriter = null;
+            }
+        }
+    }
+
+    // Single record read. Coalesced with concurrent reads of the same key and hedged if enabled.
+    private Record read(final Key key, final String... binNames) {
+        SingleFlight<Record> flight = singleFlight;
+        if (flight == null)
+            return readRecord(key, binNames);
+        String flightKey = binNames.length == 0 ? key.userKey.toString()
+                : SingleFlight.variantKey(key.userKey.toString(), String.join(",", binNames));
+        SingleFlight.Call<Record> call = flight.execute(flightKey, new Callable<Record>() {
+            @Override
+            public Record call() {
+                return readRecord(key, binNames);
+            }
+        });
+        Record record = call.getValue();
+        // Entities mapped from a shared record must not share mutable bin values.
+        return call.isShared() && record != null ? EntityBinMapper.copyRecord(record) : record;
+    }
+
+    private Record readRecord(Key key, String... binNames) {
+        HedgedReader reader = hedgedReader;
+        if (reader != null)
+            return reader.get(key, binNames);
+        if (binNames.length == 0)
+            return aerospikeClient.get(null, key);
+        return aerospikeClient.get(null, key, binNames);
+    }
+
+    // Read your own writes: flush buffered changes of a key before it is read. A flush in progress is awaited.
+    void flushPending(String keyValue) {
+        WriteBehindBuffer<T> buffer = writeBehindBuffer;
+        if (buffer != null && buffer.isPending(keyValue))
+            buffer.flush();
+    }
+
     // Insert a new record
     @Override
     public void insert(T entity) {
@@ -190,14 +533,171 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         change("UPDATE", entity);
     }
 
-    //InsertAll events in the list
+    /**
+     * Optimistic read-modify-write without locks. Reads the entity from the database, applies the mutator and
+     * writes the changed fields only if the record generation did not change in between. On a concurrent change, the entity is read
+     * again and the mutator is applied again, up to DEFAULT_CAS_MAX_RETRIES times.
+     * @param keyValue primary key value
+     * @param mutator changes to apply
+     * @return result with the updated entity and the number of retries
+     * @throws AerospikeException with GENERATION_ERROR result code if all retries failed.
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public CompareAndUpdateResult<T> compareAndUpdate(String keyValue, EntityMutator<T> mutator) throws InstantiationException, IllegalAccessException {
+        return compareAndUpdate(keyValue, mutator, DEFAULT_CAS_MAX_RETRIES);
+    }
+
+    /**
+     * Optimistic read-modify-write without locks. See compareAndUpdate(String, EntityMutator).
+     * @param keyValue primary key value
+     * @param mutator changes to apply
+     * @param maxRetries maximum number of retries on concurrent changes
+     * @return result with the updated entity and the number of retries. The entity is null if the record does not exist.
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public CompareAndUpdateResult<T> compareAndUpdate(String keyValue, EntityMutator<T> mutator, int maxRetries) throws InstantiationException, IllegalAccessException {
+        Assert.notNull(keyValue, "Key value cannot be null");
+        Assert.notNull(mutator, "Mutator cannot be null");
+        Key key = createKey(keyValue);
+        flushPending(keyValue);
+        for (int attempt = 0; ; attempt++) {
+            // Read from the master, bypassing the near cache, so that a retry sees the current generation.
+            T entity = record2Entity(aerospikeClient.get(null, key));
+            if (entity == null)
+                return new CompareAndUpdateResult<T>(null, attempt, false);
+            mutator.mutate(entity);
+            // Only changed fields are written as the entity is read from the database.
+            Bin[] binArray = mapper.toBins(entity, true);
+            if (binArray.length == 0)
+                return new CompareAndUpdateResult<T>(entity, attempt, false);
+
+            // Write only if the generation is still the one that was read.
+            WritePolicy policy = new WritePolicy(AerospikeClientUtil.getUpdatePolicy());
+            policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+            policy.generation = mapper.getMetadata().getGeneration(entity);
+            Operation[] operations = new Operation[binArray.length + 1];
+            for (int i = 0; i < binArray.length; i++) {
+                operations[i] = Operation.put(binArray[i]);
+            }
+            // Get the new generation and expiration.
+            operations[binArray.length] = Operation.getHeader();
+            try {
+                Record header = aerospikeClient.operate(policy, key, operations);
+                invalidate(keyValue);
+                casUpdates.incrementAndGet();
+                mapper.getMetadata().bind(entity, mapper.getMetadata().getBins(entity), header.generation, header.expiration);
+                entity.clearValueChangeStatus();
+                return new CompareAndUpdateResult<T>(entity, attempt, true);
+            } catch (AerospikeException ae) {
+                if (ae.getResultCode() != ResultCode.GENERATION_ERROR)
+                    throw ae;
+                if (attempt >= maxRetries || !backoff(attempt)) {
+                    casFailures.incrementAndGet();
+                    logger.error("Compare-and-update of key " + keyValue + " failed after " + attempt + " retries");
+                    throw ae;
+                }
+                casRetries.incrementAndGet();
+            }
+        }
+    }
+
+    // Exponential backoff with jitter. Returns false if interrupted.
+    private boolean backoff(int attempt) {
+        long maxMillis = Math.min(CAS_MAX_BACKOFF_MILLIS, 1L << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxMillis / 2, maxMillis + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Number of successful compare-and-update writes.
+    public long getCompareAndUpdateCount() {
+        return casUpdates.get();
+    }
+
+    // Number of compare-and-update retries caused by concurrent changes.
+    public long getCompareAndUpdateRetries() {
+        return casRetries.get();
+    }
+
+    // Number of compare-and-update calls that gave up after all retries.
+    public long getCompareAndUpdateFailures() {
+        return casFailures.get();
+    }
+
+    /**
+     * Insert all entities in the list. Entities are written in parallel with the default bulk write options.
+     * @param objectsToSave entities to insert
+     * @throws BulkWriteException if one or more entities could not be inserted. All other entities are still written.
+     */
     @Override
     public void insertAll(Collection<T> objectsToSave) {
-        for (T element : objectsToSave) {
-            if (element == null) {
-                continue;
-            }
-            save(element);
+        checkBulkWrite(getBulkWriter().insertAll(objectsToSave));
+    }
+
+    /**
+     * Save (create or update) all entities in the list.
+     * @param objectsToSave entities to save
+     * @throws BulkWriteException if one or more entities could not be saved. All other entities are still written.
+     */
+    @Override
+    public void saveAll(Collection<T> objectsToSave) {
+        checkBulkWrite(getBulkWriter().saveAll(objectsToSave));
+    }
+
+    /**
+     * Update all entities in the list.
+     * @param objectsToUpdate entities to update
+     * @throws BulkWriteException if one or more entities could not be updated. All other entities are still written.
+     */
+    @Override
+    public void updateAll(Collection<T> objectsToUpdate) {
+        checkBulkWrite(getBulkWriter().updateAll(objectsToUpdate));
+    }
+
+    /**
+     * Creates a bulk writer for this repository. Use it to tune parallelism and throughput or to read
+     * progress counters and per-record failures. Close it when done.
+     * @param options bulk write options
+     * @return bulk writer
+     */
+    public BulkWriter<T> bulkWriter(BulkWriteOptions options) {
+        return new BulkWriter<T>(this, namespace, options);
+    }
+
+    /**
+     * Creates a parallel batch reader for this repository. Use it to tune chunk size and parallelism, to get
+     * results aligned with the input keys or to stream results as chunks complete. Close it when done.
+     * @param options batch read options
+     * @return batch reader
+     */
+    public BatchReader<T> batchReader(BatchReadOptions options) {
+        return new BatchReader<T>(this, mapper, namespace, options);
+    }
+
+    // Shared batch reader with default options.
+    private synchronized BatchReader<T> getBatchReader() {
+        if (batchReader == null)
+            batchReader = batchReader(new BatchReadOptions());
+        return batchReader;
+    }
+
+    // Shared bulk writer with default options.
+    private synchronized BulkWriter<T> getBulkWriter() {
+        if (bulkWriter == null)
+            bulkWriter = bulkWriter(new BulkWriteOptions());
+        return bulkWriter;
+    }
+
+    private void checkBulkWrite(BulkWriter.Result result) {
+        if (result.getFailed() > 0) {
+            logger.error(result.getFailed() + " of " + result.getTotal() + " records failed to write to set " + setName);
+            throw new BulkWriteException(result.getFailed() + " records failed to write", result.getFailed(), result.getFailures());
         }
     }
 
@@ -209,19 +709,13 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
      * @throws InstantiationException
      */
     private T record2Entity(Record record) throws IllegalAccessException, InstantiationException {
-        if (record != null) {
-            // Create an object instance
-            T mObject = domainType.newInstance();
-            //String keyName = Util.get(mObject, "keyName"); Util.set(mObject,keyName,keyValue); --> Keyname is already in the bins.
-            // Set bins, generation, expiration and isFromDB values.
-            Utils.set(mObject, "bins", record.bins);
-            Utils.set(mObject, "generation", record.generation);
-            Utils.set(mObject, "expiration", record.expiration);
-            Utils.set(mObject, "isFromDb", !(record.generation == 0 && record.expiration == 0));
-            Utils.set(record, "bins", null);// clear bins reference for letting record garbage collection
-            return mObject;
-        }
-        return null;
+        return mapper.toEntity(record);
+    }
+
+    // Rebinds the entity of the previous record of a scan or query.
+    @SuppressWarnings("unchecked")
+    private T record2ReusedEntity(Record record, String[] binNames, Object reuse) throws IllegalAccessException, InstantiationException {
+        return mapper.toReusedEntity(record, binNames, (T) reuse);
     }
 
     /**
@@ -234,11 +728,16 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     public Object get(String keyValue, String fieldName) {
         if (keyValue == null)
             return null;
+        // Flush first, so that buffered writes of new keys are in the key filter.
+        flushPending(keyValue);
+        if (isMissing(keyValue))
+            return null;
         // Create a Key. Key maps to unique event id
         Key key = new Key(namespace, setName, keyValue);
-        Record record = aerospikeClient.get(null, key, fieldName);
+        String binName = mapper.toBinName(fieldName);
+        Record record = read(key, binName);
         if (record != null)
-            return record.getValue(fieldName);
+            return mapper.fromBinValue(record.getValue(binName));
         return null;
     }
 
@@ -253,13 +752,18 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     public Map<String, Object> get(String keyValue, String... fieldNames) {
         if (keyValue == null)
             return null;
+        // Flush first, so that buffered writes of new keys are in the key filter.
+        flushPending(keyValue);
+        if (isMissing(keyValue))
+            return null;
         // Create a Key. Key maps to unique event id
         Key key = new Key(namespace, setName, keyValue);
-        Record record = aerospikeClient.get(null, key, fieldNames);
+        String[] binNames = mapper.toBinNames(fieldNames);
+        Record record = read(key, binNames);
         if(record != null) {
             Map<String, Object> result = new HashMap<String, Object>();
-            for (String fieldName : fieldNames) {
-                result.put(fieldName, record.getValue(fieldName));
+            for (int i = 0; i < fieldNames.length; i++) {
+                result.put(fieldNames[i], mapper.fromBinValue(record.getValue(binNames[i])));
             }
             return result;
         } else return null;
@@ -276,14 +780,51 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     public T findOne(String keyValue) throws InstantiationException, IllegalAccessException {
         if (keyValue == null)
             return null;
+        // Flush first, so that buffered writes of new keys are in the key filter.
+        flushPending(keyValue);
+        if (isMissing(keyValue))
+            return null;
+        NearCache<T> cache = nearCache;
+        if (cache != null) {
+            T cached = cache.get(keyValue);
+            if (cached != null)
+                return cached;
+        }
+        long stamp = cache != null ? cache.stamp() : 0;
         // Create a Key. Key maps to unique event id
         Key key = new Key(namespace, setName, keyValue);
-        Record record = aerospikeClient.get(null, key);
+        Record record = read(key);
+        if (cache != null)
+            cache.put(keyValue, record, stamp);
         Entity entity = record2Entity(record);
         //noinspection unchecked
         return (T) entity;
     }
 
+    /**
+     * Finds a partial entity for a given key value. Only the given fields and the key are read, so list views
+     * do not pay for bins they do not use. The entity is flagged as partial and its writes touch only the
+     * read and the changed fields.
+     * @param keyValue key value
+     * @param fieldNames fields to read. All fields are read if empty.
+     * @return partial entity if exists else returns null
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    @Override
+    public T findOne(String keyValue, String... fieldNames) throws InstantiationException, IllegalAccessException {
+        if (fieldNames == null || fieldNames.length == 0)
+            return findOne(keyValue);
+        if (keyValue == null)
+            return null;
+        // Flush first, so that buffered writes of new keys are in the key filter.
+        flushPending(keyValue);
+        if (isMissing(keyValue))
+            return null;
+        String[] binNames = mapper.toProjection(fieldNames);
+        return mapper.toPartialEntity(read(new Key(namespace, setName, keyValue), binNames), binNames);
+    }
+
     /**
      * Checks if an entity exists corresponding to a given key value
      * @param keyValue primary key value.
@@ -293,11 +834,76 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     public boolean exists(String keyValue) {
         if (keyValue == null)
             return false;
+        // Flush first, so that buffered writes of new keys are in the key filter.
+        flushPending(keyValue);
+        if (isMissing(keyValue))
+            return false;
         // Create a Key. Key maps to unique event id
         Key key = new Key(namespace, setName, keyValue);
         return aerospikeClient.exists(null, key);
     }
 
+    /**
+     * Checks which entities exist with a single batch exists call instead of one call per key.
+     * @param keyValues primary key values
+     * @return flags aligned with the key values. False for blank keys.
+     */
+    @Override
+    public boolean[] exists(String[] keyValues) {
+        boolean[] result = new boolean[keyValues.length];
+        int[] positions = batchPositions(keyValues);
+        if (positions.length == 0)
+            return result;
+        boolean[] found = aerospikeClient.exists(AerospikeClientUtil.getBatchPolicy(), batchKeys(keyValues, positions));
+        for (int i = 0; i < positions.length; i++) {
+            result[positions[i]] = found[i];
+        }
+        return result;
+    }
+
+    /**
+     * Reads the generation and expiration of entities without bin data, with a single batch call.
+     * @param keyValues primary key values
+     * @return headers aligned with the key values. Null for missing records and blank keys.
+     */
+    @Override
+    public RecordHeader[] headers(String[] keyValues) {
+        RecordHeader[] result = new RecordHeader[keyValues.length];
+        int[] positions = batchPositions(keyValues);
+        if (positions.length == 0)
+            return result;
+        Record[] records = aerospikeClient.getHeader(AerospikeClientUtil.getBatchPolicy(), batchKeys(keyValues, positions));
+        for (int i = 0; i < positions.length; i++) {
+            Record record = records[i];
+            if (record != null)
+                result[positions[i]] = new RecordHeader(keyValues[positions[i]], record.generation, record.expiration, record.getTimeToLive());
+        }
+        return result;
+    }
+
+    // Positions of the non-blank key values that may exist. Flushes their buffered writes.
+    private int[] batchPositions(String[] keyValues) {
+        Assert.notNull(keyValues, "Key values cannot be null");
+        int[] positions = new int[keyValues.length];
+        int count = 0;
+        for (int i = 0; i < keyValues.length; i++) {
+            if (keyValues[i] == null || keyValues[i].trim().length() == 0)
+                continue;
+            flushPending(keyValues[i]);
+            if (!isMissing(keyValues[i]))
+                positions[count++] = i;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    private Key[] batchKeys(String[] keyValues, int[] positions) {
+        Key[] keys = new Key[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            keys[i] = createKey(keyValues[positions[i]]);
+        }
+        return keys;
+    }
+
     /**
      * Find all entities in the database
      * @return ArrayList of entity objects
@@ -319,8 +925,9 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     }
 
     /**
-     * Find all entities that match a given filter and qualifiers.
-     * @param filter Filter on fields
+     * Find all entities that match a given filter and qualifiers. If the filter is null, the query planner uses
+     * the most selective indexed qualifier as the filter, or scans the set if no qualifier is indexed.
+     * @param filter Filter on bins, or null. Use getBinName to build filters on fields with bin aliases.
      * @param qualifiers Qualifiers
      * @return ArrayList of entities
      */
@@ -352,23 +959,68 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         // If empty list
         if (keyValues.length == 0)
             return null;
-        Key[] keys = new Key[keyValues.length];
-        // create an array of keys
-        for (int i = 0; i < keyValues.length; i++) {
-            if (keyValues[i] != null && keyValues[i].trim().length() != 0) {
-                keys[i] = new Key(namespace, setName, keyValues[i]);
-            }
+        // Large key arrays are read in parallel chunks. Blank keys and missing records are skipped.
+        return getBatchReader().read(keyValues).getFound();
+    }
+
+    /**
+     * Find partial entities for a given set of keyValues. Only the given fields and the key are read.
+     * @param keyValues List of key value strings
+     * @param fieldNames fields to read. All fields are read if empty.
+     * @return partial entities of the existing records
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    @Override
+    public ArrayList<T> findAll(String[] keyValues, String... fieldNames) throws InstantiationException, IllegalAccessException {
+        if (fieldNames == null || fieldNames.length == 0)
+            return findAll(keyValues);
+        if (keyValues.length == 0)
+            return null;
+        return getBatchReader().read(keyValues, fieldNames).getFound();
+    }
+
+    /**
+     * Find partial entities that match a given filter and qualifiers. Only the given fields and the key are
+     * returned. If the filter is null, the query planner chooses one from the qualifiers.
+     * @param filter Filter on bins. Use getBinName to build filters on fields with bin aliases.
+     * @param fieldNames fields to read. All fields are read if empty.
+     * @param qualifiers Qualifiers
+     * @return ArrayList of partial entities
+     */
+    @Override
+    public ArrayList<T> findAllProjected(Filter filter, String[] fieldNames, Qualifier... qualifiers) {
+        if (fieldNames == null || fieldNames.length == 0)
+            return findAll(filter, qualifiers);
+        final String[] binNames = mapper.toProjection(fieldNames);
+        Statement stmt = new Statement();
+        stmt.setNamespace(namespace);
+        stmt.setSetName(setName);
+        stmt.setBinNames(binNames);
+        Qualifier[] binQualifiers = mapper.toBinQualifiers(qualifiers);
+        if (filter == null) {
+            QueryPlan plan = getQueryPlanner().plan(binQualifiers);
+            filter = plan.getFilter();
+            binQualifiers = plan.getQualifiers();
         }
-        // Return list.
-        ArrayList<T> entityList = new ArrayList<T>();
-        // Use batch operation to get all corresponding records
-        Record[] records = aerospikeClient.get(AerospikeClientUtil.getBatchPolicy(), keys);
-        for (int i = 0; i < records.length; i++) {
-            if (records[i] != null) {
-                Key key = keys[i];
-                entityList.add(record2Entity(records[i]));
+        if (filter != null)
+            stmt.setFilters(filter);
+        final ArrayList<T> entityList = new ArrayList<T>();
+        KeyRecordIterator iterator = AerospikeClientUtil.getQueryEngine().select(stmt, binQualifiers);
+        try {
+            while (iterator.hasNext()) {
+                entityList.add(mapper.toPartialEntity(iterator.next().record, binNames));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create " + domainType.getName(), e);
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Cannot create " + domainType.getName(), e);
+        } finally {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close query iterator: " + e.getMessage());
             }
-
         }
         return entityList;
     }
@@ -382,11 +1034,8 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
      * @return Iterable list of entities.
      */
     private Iterable<T> findAllUsingQuery(Filter filter, Qualifier... qualifiers) {
-        Statement stmt = new Statement();
-        stmt.setNamespace(namespace);
-        stmt.setSetName(setName);
         Iterable<T> results;
-        final KeyRecordIterator recIterator = AerospikeClientUtil.getQueryEngine().select(namespace, setName, filter, qualifiers);
+        final KeyRecordIterator recIterator = select(filter, qualifiers);
         results = new Iterable<T>() {
             @Override
             public Iterator<T> iterator() {
@@ -396,38 +1045,116 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         return results;
     }
 
+    // Runs a query on field name qualifiers. The query planner chooses the filter if there is none.
+    private KeyRecordIterator select(Filter filter, Qualifier... qualifiers) {
+        Qualifier[] binQualifiers = mapper.toBinQualifiers(qualifiers);
+        if (filter == null) {
+            QueryPlan plan = getQueryPlanner().plan(binQualifiers);
+            filter = plan.getFilter();
+            binQualifiers = plan.getQualifiers();
+        }
+        return AerospikeClientUtil.getQueryEngine().select(namespace, setName, filter, binQualifiers);
+    }
+
+    /**
+     * Explains how a query without a filter would run: which index the query planner uses, or that the set
+     * is scanned, and which qualifiers are left for the Lua filter.
+     * @param qualifiers Qualifiers on field names
+     * @return query plan
+     */
+    public QueryPlan explain(Qualifier... qualifiers) {
+        return getQueryPlanner().plan(mapper.toBinQualifiers(qualifiers));
+    }
+
     /**
-     * Entity iterator
+     * Gets the query planner of the set, which caches its secondary index metadata.
+     * @return query planner
+     */
+    public QueryPlanner getQueryPlanner() {
+        return QueryPlanner.forSet(namespace, setName);
+    }
+
+    /**
+     * Entity iterator over query or scan results. Records are pulled lazily from the query record queue, which
+     * is bounded by queryPolicyDefault.recordQueueSize, so the whole result set is never held in memory.
+     * The query is closed when the results are exhausted or the limit is reached.
+     * If entities are reused, next() returns the same instance rebound to every record; it is valid only until
+     * the following call to next() or close().
      * @param <T>
      */
     public class EntityIterator<T> implements CloseableIterator<T> {
         private final KeyRecordIterator keyRecordIterator;
+        // Maximum number of entities to return. Negative means unlimited.
+        private final long limit;
+        private final boolean reuseEntities;
+        private T reused;
+        private long returned;
+        private boolean closed;
 
         public EntityIterator(KeyRecordIterator keyRecordIterator) {
+            this(keyRecordIterator, 0, -1);
+        }
+
+        public EntityIterator(KeyRecordIterator keyRecordIterator, long skip, long limit) {
+            this(keyRecordIterator, skip, limit, false);
+        }
+
+        /**
+         * Creates an iterator that skips the first records and stops after a number of entities.
+         * @param keyRecordIterator query results
+         * @param skip number of records to skip
+         * @param limit maximum number of entities to return. Negative means unlimited.
+         * @param reuseEntities if true, one entity instance is rebound to every record
+         */
+        public EntityIterator(KeyRecordIterator keyRecordIterator, long skip, long limit, boolean reuseEntities) {
             this.keyRecordIterator = keyRecordIterator;
+            this.limit = limit;
+            this.reuseEntities = reuseEntities;
+            for (long i = 0; i < skip && hasNext(); i++) {
+                keyRecordIterator.next();
+            }
         }
 
         @Override
         public boolean hasNext() {
-            return this.keyRecordIterator.hasNext();
+            if (closed)
+                return false;
+            if ((limit >= 0 && returned >= limit) || !keyRecordIterator.hasNext()) {
+                // Stop the query without pulling the remaining records.
+                close();
+                return false;
+            }
+            return true;
         }
 
         @Override
         public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
             KeyRecord keyRecord = this.keyRecordIterator.next();
+            returned++;
             try {
+                if (reuseEntities) {
+                    //noinspection unchecked
+                    reused = (T) record2ReusedEntity(keyRecord.record, null, reused);
+                    return reused;
+                }
                 //noinspection unchecked
                 return (T) record2Entity(keyRecord.record);
             } catch (IllegalAccessException e) {
-                e.printStackTrace();
+                close();
+                throw new IllegalStateException("Cannot create " + domainType.getName(), e);
             } catch (InstantiationException e) {
-                e.printStackTrace();
+                close();
+                throw new IllegalStateException("Cannot create " + domainType.getName(), e);
             }
-            return null;
         }
 
         @Override
         public void close() {
+            if (closed)
+                return;
+            closed = true;
             try {
                 keyRecordIterator.close();
             } catch (IOException e) {
@@ -441,23 +1168,300 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     }
 
     /**
-     * Gets the number of records in the set
+     * Iterates over all entities that match a given filter and qualifiers without loading them into a list.
+     * Close the iterator if it is not read to the end.
+     * @param filter Filter on bins, or null to let the query planner choose one from the qualifiers.
+     * @param qualifiers Qualifiers
+     * @return closeable entity iterator
+     */
+    public CloseableIterator<T> iterate(Filter filter, Qualifier... qualifiers) {
+        return iterate(filter, 0, -1, qualifiers);
+    }
+
+    /**
+     * Iterates over a range of the entities that match a given filter and qualifiers. The query is closed as
+     * soon as the limit is reached.
+     * @param filter Filter on bins, or null to let the query planner choose one from the qualifiers.
+     * @param skip number of entities to skip
+     * @param limit maximum number of entities. Negative means unlimited.
+     * @param qualifiers Qualifiers
+     * @return closeable entity iterator
+     */
+    public CloseableIterator<T> iterate(Filter filter, long skip, long limit, Qualifier... qualifiers) {
+        KeyRecordIterator recIterator = select(filter, qualifiers);
+        return new EntityIterator<T>(recIterator, skip, limit);
+    }
+
+    /**
+     * Iterates over the entities that match a given filter and qualifiers with a single reused entity instance,
+     * so that read-only jobs allocate close to nothing per record. The entity returned by next() is valid only
+     * until the following call to next() or close(); call detach() on it to keep a copy.
+     * @param filter Filter on bins, or null to let the query planner choose one from the qualifiers.
+     * @param qualifiers Qualifiers
+     * @return closeable iterator that returns the same entity instance for every record
+     */
+    public CloseableIterator<T> iterateReused(Filter filter, Qualifier... qualifiers) {
+        KeyRecordIterator recIterator = select(filter, qualifiers);
+        return new EntityIterator<T>(recIterator, 0, -1, true);
+    }
+
+    /**
+     * Streams all entities in the set. Use the stream in a try-with-resources block, or read it to the end,
+     * so that the scan is closed.
+     * @return sequential stream of entities
+     */
+    public Stream<T> stream() {
+        return stream(null);
+    }
+
+    /**
+     * Streams the entities that match a given filter and qualifiers. Entities are pulled lazily, so limit()
+     * and findFirst() stop reading early. Use the stream in a try-with-resources block, or read it to the
+     * end, so that the query is closed.
+     * @param filter Filter on bins, or null to let the query planner choose one from the qualifiers.
+     * @param qualifiers Qualifiers
+     * @return sequential stream of entities
+     */
+    public Stream<T> stream(Filter filter, Qualifier... qualifiers) {
+        return toStream(iterate(filter, qualifiers));
+    }
+
+    /**
+     * Streams a range of the entities that match a given filter and qualifiers. The query is closed as soon as
+     * the limit is reached.
+     * @param filter Filter on bins, or null to let the query planner choose one from the qualifiers.
+     * @param skip number of entities to skip
+     * @param limit maximum number of entities. Negative means unlimited.
+     * @param qualifiers Qualifiers
+     * @return sequential stream of entities
+     */
+    public Stream<T> stream(Filter filter, long skip, long limit, Qualifier... qualifiers) {
+        return toStream(iterate(filter, skip, limit, qualifiers));
+    }
+
+    private Stream<T> toStream(final CloseableIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        iterator.close();
+                    }
+                });
+    }
+
+    /**
+     * Scans one page of the set. Pass the cursor of the returned page to get the next page. Nodes are scanned
+     * one at a time in node name order, and at most one page of entities is held in memory.
+     * Pagination is best-effort, not a consistent cursor: client 3.x has no partition scans and the scan order of
+     * a node is not guaranteed to be stable. A resumed node scan reads keys only up to the last record of the
+     * previous page, found by its digest or else by its position, and reads the bins of the page with a batch
+     * read. Records written, deleted or migrated between pages may be repeated or missed. A cluster change
+     * during a page fails the page; retry it with the same cursor.
+     * Every resumed page re-reads the keys of its node from the start, so paging through a node of n records
+     * with pages of p records reads about n * n / (2 * p) keys in total: the cost is quadratic in the node size.
+     * Only keys are read, not bins, but use pages large enough for n / p to stay small, or use scanParallel or
+     * stream for full set jobs.
+     * @param cursor cursor of the previous page, or null to start a new scan.
+     * @param pageSize maximum number of entities in the page
+     * @return page of entities and the cursor of the next page
+     */
+    public ScanPage<T> scanPage(String cursor, final int pageSize) {
+        Assert.isTrue(pageSize > 0, "Page size must be greater than 0");
+        ScanCursor position = cursor != null ? ScanCursor.decode(cursor) : null;
+        Node[] nodes = aerospikeClient.getNodes();
+        Arrays.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node n1, Node n2) {
+                return n1.getName().compareTo(n2.getName());
+            }
+        });
+        final List<T> entities = new ArrayList<T>(pageSize);
+        // Keys only. Bins of the page are read with a batch read.
+        ScanPolicy policy = new ScanPolicy(aerospikeClient.scanPolicyDefault);
+        policy.failOnClusterChange = true;
+        policy.includeBinData = false;
+        for (final Node node : nodes) {
+            // Nodes before the cursor node are done. If the cursor node left the cluster, continue with the next one.
+            if (position != null && node.getName().compareTo(position.getNodeName()) < 0)
+                continue;
+            final ScanCursor resume = position != null && node.getName().equals(position.getNodeName()) ? position : null;
+            final long skip = resume != null ? resume.getOffset() : 0;
+            // Digests of the page and the number of records of the node scanned up to the last of them.
+            final int remaining = pageSize - entities.size();
+            final List<byte[]> digests = new ArrayList<byte[]>(remaining);
+            final long[] seen = new long[1];
+            final boolean[] anchored = { resume == null };
+            boolean full = false;
+            try {
+                aerospikeClient.scanNode(policy, node, namespace, setName, new ScanCallback() {
+                    public void scanCallback(Key key, Record record) throws AerospikeException {
+                        seen[0]++;
+                        if (!anchored[0]) {
+                            if (Arrays.equals(key.digest, resume.getDigest())) {
+                                // Last record of the previous page. Records collected so far were returned already.
+                                anchored[0] = true;
+                                digests.clear();
+                                return;
+                            }
+                            if (seen[0] <= skip)
+                                return;
+                        }
+                        digests.add(key.digest);
+                        if (digests.size() >= remaining)
+                            throw new AerospikeException.ScanTerminated();
+                    }
+                });
+            } catch (AerospikeException.ScanTerminated e) {
+                full = true;
+            }
+            if (!anchored[0])
+                logger.warn("Last record of the previous page was not found on node " + node.getName() + ". Records may be repeated or missed.");
+            if (!digests.isEmpty()) {
+                Key[] keys = new Key[digests.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = new Key(namespace, digests.get(i), setName, null);
+                }
+                // Records deleted since the key scan are skipped.
+                for (Record record : aerospikeClient.get(AerospikeClientUtil.getBatchPolicy(), keys)) {
+                    if (record == null)
+                        continue;
+                    try {
+                        entities.add(record2Entity(record));
+                    } catch (Exception e) {
+                        throw new AerospikeException(e);
+                    }
+                }
+            }
+            if (full)
+                return new ScanPage<T>(entities, new ScanCursor(node.getName(), seen[0], digests.get(digests.size() - 1)).encode());
+            position = null;
+        }
+        return new ScanPage<T>(entities, null);
+    }
+
+    /**
+     * Scans all nodes concurrently and pushes every entity to a consumer. Records are mapped on the scan threads
+     * without copying their bins. Use it for full set jobs such as exports and recomputations.
+     * With ScanOptions.reuseEntities, every scan thread rebinds one entity instance to its records. The entity
+     * is valid only until accept returns; call detach() on it to keep a copy.
+     * @param options scan options
+     * @param consumer thread safe consumer
+     * @return number of entities delivered
+     * @throws AerospikeException if the scan failed or the consumer threw an exception. The cause is the consumer exception.
+     */
+    public long scanParallel(ScanOptions options, final EntityConsumer<T> consumer) {
+        Assert.notNull(options, "Scan options cannot be null");
+        Assert.notNull(consumer, "Consumer cannot be null");
+        ScanPolicy policy = new ScanPolicy(aerospikeClient.scanPolicyDefault);
+        policy.concurrentNodes = true;
+        policy.maxConcurrentNodes = options.getMaxConcurrentNodes();
+        policy.scanPercent = options.getScanPercent();
+        policy.includeBinData = true;
+        String[] fieldNames = options.getFieldNames();
+        final String[] binNames = fieldNames == null || fieldNames.length == 0 ? null : mapper.toProjection(fieldNames);
+        final RateLimiter rateLimiter = new RateLimiter(options.getMaxRecordsPerSecond());
+        final AtomicLong delivered = new AtomicLong();
+        // Entity of the previous record by scan thread.
+        final ThreadLocal<T> reused = options.isReuseEntities() ? new ThreadLocal<T>() : null;
+        ScanCallback callback = new ScanCallback() {
+            public void scanCallback(Key key, Record record) throws AerospikeException {
+                try {
+                    rateLimiter.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AerospikeException.ScanTerminated(e);
+                }
+                T entity;
+                try {
+                    if (reused != null) {
+                        entity = record2ReusedEntity(record, binNames, reused.get());
+                        reused.set(entity);
+                    } else {
+                        entity = binNames == null ? record2Entity(record) : mapper.toPartialEntity(record, binNames);
+                    }
+                } catch (Exception e) {
+                    throw new AerospikeException(e);
+                }
+                try {
+                    consumer.accept(entity);
+                } catch (RuntimeException e) {
+                    throw new AerospikeException(e);
+                }
+                delivered.incrementAndGet();
+            }
+        };
+        if (binNames == null)
+            aerospikeClient.scanAll(policy, namespace, setName, callback);
+        else
+            aerospikeClient.scanAll(policy, namespace, setName, callback, binNames);
+        return delivered.get();
+    }
+
+    /**
+     * Gets the number of records in the set, without replicas. Served from cached set statistics that are
+     * refreshed in the background, so it can be called often at no cluster cost.
      * @return the number of records.
      */
     @Override
     public long count() {
-        Node[] nodes = aerospikeClient.getNodes();
-        int replicationCount = 2;
-        int nodeCount = nodes.length;
-        int noObjects = 0;
-        for (Node node : nodes) {
-            String infoString = Info.request(node, "sets/" + namespace + "/" + setName);
-            String noObjectsStr = infoString.substring(infoString.indexOf("=") + 1, infoString.indexOf(":"));
-            noObjects = Integer.parseInt(noObjectsStr);
+        return getStatistics().getObjectCount();
+    }
+
+    /**
+     * Runs an aggregation over all records of the set on the server.
+     * @param aggregation aggregation, for example Aggregation.sum(fieldName)
+     * @return aggregated result
+     */
+    public <R> R aggregate(Aggregation<R> aggregation) {
+        return aggregate(null, aggregation);
+    }
+
+    /**
+     * Runs an aggregation on the server over the records that match a secondary index filter. Records are
+     * filtered, mapped and reduced by stream UDFs on the nodes, so they never cross the network. The UDF
+     * module is registered on first use.
+     * @param filter Filter on bins, or null to aggregate the whole set. Use getBinName to build filters on fields with bin aliases.
+     * @param aggregation aggregation, for example Aggregation.groupByCount(fieldName)
+     * @return aggregated result
+     */
+    @Override
+    public <R> R aggregate(Filter filter, Aggregation<R> aggregation) {
+        Assert.notNull(aggregation, "Aggregation cannot be null");
+        UdfModule module = aggregation.getModule();
+        module.register(aerospikeClient);
+        Value[] arguments = aggregation.getArguments();
+        if (aggregation.getFieldName() != null) {
+            Value[] withBin = new Value[arguments.length + 1];
+            withBin[0] = Value.get(mapper.toBinName(aggregation.getFieldName()));
+            System.arraycopy(arguments, 0, withBin, 1, arguments.length);
+            arguments = withBin;
         }
-        // System.out.println(String.format("Total Master and Replica objects %d", noObjects));
-        // System.out.println(String.format("Total Master objects %d", (nodeCount > 1) ? noObjects/replicationCount : noObjects));
-        return (nodeCount > 1) ? noObjects / replicationCount : noObjects;
+        Statement stmt = new Statement();
+        stmt.setNamespace(namespace);
+        stmt.setSetName(setName);
+        if (filter != null)
+            stmt.setFilters(filter);
+        stmt.setAggregateFunction(module.getClassLoader(), module.getResourcePath(), module.getPackageName(),
+                aggregation.getFunctionName(), arguments);
+        Object value = null;
+        ResultSet resultSet = aerospikeClient.queryAggregate(null, stmt);
+        try {
+            // The final reduce runs on the client and returns a single value.
+            while (resultSet.next()) {
+                value = resultSet.getObject();
+            }
+        } finally {
+            resultSet.close();
+        }
+        return aggregation.toResult(value);
+    }
+
+    /**
+     * Gets the cached statistics of the set.
+     * @return set statistics
+     */
+    public SetStatistics getStatistics() {
+        return SetStatistics.forSet(namespace, setName);
     }
 
     // operate on a bin value.
@@ -466,17 +1470,14 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         Assert.notNull(object, "Object to prepend to must not be null!");
         T result;
         try {
-            Record record = null;
-            String keyName = Utils.get(object,"keyName");
-            HashMap<String,Object> bins = Utils.get(object,"bins");
-            String keyValue = (String)bins.get(keyName);
+            String keyValue = mapper.getKeyValue(object);
+            flushPending(keyValue);
+            addKey(keyValue);
             Key key = new Key(namespace, setName, keyValue);
-            if (opType.equals("PREPEND"))
-                record = aerospikeClient.operate(null, key, Operation.prepend(new Bin(fieldName, value)), Operation.get(fieldName));
-            else if (opType.equals("APPEND"))
-                record = aerospikeClient.operate(null, key, Operation.append(new Bin(fieldName, value)), Operation.get(fieldName));
-            else if (opType.equals("ADD"))
-                record = aerospikeClient.operate(null, key, Operation.add(new Bin(fieldName, value)), Operation.get(fieldName));
+            String binName = mapper.toBinName(fieldName);
+            Record record = aerospikeClient.operate(null, key, mapper.toOperation(opType, new Bin(binName, value)), Operation.get(binName));
+            addKey(keyValue);
+            invalidate(keyValue);
             result = record2Entity(record);
         } catch (AerospikeException ae) {
             logger.error(ae.getMessage());
@@ -490,25 +1491,14 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         Assert.notNull(object, "Object to prepend to must not be null!");
         T result = null;
         try {
-            Operation[] operations = new Operation[values.size() + 1];
-            int i = 0;
-            for (Map.Entry<String, Object> entry : values.entrySet()) {
-                Bin newBin = new Bin(entry.getKey(), entry.getValue());
-                if (opType.equals("PREPEND"))
-                    operations[i] = Operation.prepend(newBin);
-                else if (opType.equals("APPEND"))
-                    operations[i] = Operation.append(newBin);
-                else if (opType.equals("ADD"))
-                    operations[i] = Operation.add(newBin);
-                i++;
-            }
-            // Last operation is to get the record to return.
-            operations[i] = Operation.get();
-            String keyName = Utils.get(object,"keyName");
-            HashMap<String,Object> bins = Utils.get(object,"bins");
-            String keyValue = (String)bins.get(keyName);
+            Operation[] operations = mapper.toOperations(opType, values);
+            String keyValue = mapper.getKeyValue(object);
+            flushPending(keyValue);
+            addKey(keyValue);
             Key key = new Key(namespace, setName, keyValue);
             Record record = aerospikeClient.operate(null, key, operations);
+            addKey(keyValue);
+            invalidate(keyValue);
             result = record2Entity(record);
         } catch (AerospikeException ae) {
             logger.error(ae.getMessage());
@@ -618,6 +1608,172 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
         return operate("ADD", object, values);
     }
 
+    // Single bin operation on a record. Returns the operation result. Only writes update the key filter and
+    // the near cache.
+    private Object operate(String keyValue, String binName, Operation operation, boolean write) {
+        Assert.notNull(keyValue, "Key value cannot be null");
+        Assert.notNull(binName, "Field name cannot be null");
+        try {
+            flushPending(keyValue);
+            // List and map writes create the record if it does not exist.
+            if (write)
+                addKey(keyValue);
+            Record record = aerospikeClient.operate(null, createKey(keyValue), operation);
+            if (write) {
+                addKey(keyValue);
+                invalidate(keyValue);
+            }
+            return record != null ? record.getValue(binName) : null;
+        } catch (AerospikeException ae) {
+            logger.error(ae.getMessage());
+            throw ae;
+        }
+    }
+
+    private long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * Appends a value to a list field. The record and the list are created if they do not exist.
+     * @param keyValue Primary key value
+     * @param fieldName List field name
+     * @param value Value to append. Must be a native type.
+     * @return list size after the append
+     */
+    @Override
+    public long listAppend(String keyValue, String fieldName, Object value) {
+        String binName = mapper.toBinName(fieldName);
+        return toLong(operate(keyValue, binName, ListOperation.append(binName, mapper.toElementValue(value)), true));
+    }
+
+    /**
+     * Appends values to a list field. The record and the list are created if they do not exist.
+     * @param keyValue Primary key value
+     * @param fieldName List field name
+     * @param values Values to append. Must be native types.
+     * @return list size after the append
+     */
+    @Override
+    public long listAppendItems(String keyValue, String fieldName, List<?> values) {
+        String binName = mapper.toBinName(fieldName);
+        Assert.notEmpty(values, "Values cannot be empty");
+        List<Value> items = new ArrayList<Value>(values.size());
+        for (Object value : values) {
+            items.add(mapper.toElementValue(value));
+        }
+        return toLong(operate(keyValue, binName, ListOperation.appendItems(binName, items), true));
+    }
+
+    /**
+     * Gets a list element by index without reading the whole list.
+     * @param keyValue Primary key value
+     * @param fieldName List field name
+     * @param index Index. Negative index counts from the end.
+     * @return list element
+     */
+    @Override
+    public Object listGet(String keyValue, String fieldName, int index) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(keyValue, binName, ListOperation.get(binName, index), false);
+    }
+
+    /**
+     * Removes a list element by index.
+     * @param keyValue Primary key value
+     * @param fieldName List field name
+     * @param index Index. Negative index counts from the end.
+     * @return removed element
+     */
+    @Override
+    public Object listRemove(String keyValue, String fieldName, int index) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(keyValue, binName, ListOperation.pop(binName, index), true);
+    }
+
+    /**
+     * Gets the size of a list field.
+     * @param keyValue Primary key value
+     * @param fieldName List field name
+     * @return list size
+     */
+    @Override
+    public long listSize(String keyValue, String fieldName) {
+        String binName = mapper.toBinName(fieldName);
+        return toLong(operate(keyValue, binName, ListOperation.size(binName), false));
+    }
+
+    /**
+     * Puts a key and value into a map field. The record and the map are created if they do not exist.
+     * @param keyValue Primary key value
+     * @param fieldName Map field name
+     * @param mapKey Map key. Must be a native type.
+     * @param value Map value. Must be a native type.
+     * @return map size after the put
+     */
+    @Override
+    public long mapPut(String keyValue, String fieldName, Object mapKey, Object value) {
+        String binName = mapper.toBinName(fieldName);
+        return toLong(operate(keyValue, binName, MapOperation.put(MapPolicy.Default, binName,
+                mapper.toElementValue(mapKey), mapper.toElementValue(value)), true));
+    }
+
+    /**
+     * Puts keys and values into a map field. The record and the map are created if they do not exist.
+     * @param keyValue Primary key value
+     * @param fieldName Map field name
+     * @param items Keys and values. Must be native types.
+     * @return map size after the put
+     */
+    @Override
+    public long mapPutItems(String keyValue, String fieldName, Map<?, ?> items) {
+        String binName = mapper.toBinName(fieldName);
+        Assert.notEmpty(items, "Items cannot be empty");
+        Map<Value, Value> values = new HashMap<Value, Value>();
+        for (Map.Entry<?, ?> entry : items.entrySet()) {
+            values.put(mapper.toElementValue(entry.getKey()), mapper.toElementValue(entry.getValue()));
+        }
+        return toLong(operate(keyValue, binName, MapOperation.putItems(MapPolicy.Default, binName, values), true));
+    }
+
+    /**
+     * Gets a map value by key without reading the whole map.
+     * @param keyValue Primary key value
+     * @param fieldName Map field name
+     * @param mapKey Map key
+     * @return map value or null if the key does not exist
+     */
+    @Override
+    public Object mapGetByKey(String keyValue, String fieldName, Object mapKey) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(keyValue, binName, MapOperation.getByKey(binName, mapper.toElementValue(mapKey), MapReturnType.VALUE), false);
+    }
+
+    /**
+     * Removes a key from a map field.
+     * @param keyValue Primary key value
+     * @param fieldName Map field name
+     * @param mapKey Map key
+     * @return removed value or null if the key did not exist
+     */
+    @Override
+    public Object mapRemoveByKey(String keyValue, String fieldName, Object mapKey) {
+        String binName = mapper.toBinName(fieldName);
+        return operate(keyValue, binName, MapOperation.removeByKey(binName, mapper.toElementValue(mapKey), MapReturnType.VALUE), true);
+    }
+
+    /**
+     * Gets the size of a map field.
+     * @param keyValue Primary key value
+     * @param fieldName Map field name
+     * @return map size
+     */
+    @Override
+    public long mapSize(String keyValue, String fieldName) {
+        String binName = mapper.toBinName(fieldName);
+        return toLong(operate(keyValue, binName, MapOperation.size(binName), false));
+    }
+
     /**
      * Deletes entity
      * @param keyValue  Primary key value
@@ -625,8 +1781,15 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
     @Override
     public void delete(String keyValue) {
         if (keyValue != null && keyValue.trim().length() != 0) {
+            WriteBehindBuffer<T> buffer = writeBehindBuffer;
+            if (buffer != null)
+                buffer.discard(keyValue);
             Key key = new Key(namespace, setName, keyValue);
             aerospikeClient.delete(null, key);
+            invalidate(keyValue);
+            KeyFilter<T> filter = keyFilter;
+            if (filter != null)
+                filter.deleted();
         }
     }
 
@@ -649,19 +1812,32 @@ public class AerospikeRepository<T extends Entity> implements Repository<T> {
      */
     @Override
     public long deleteAll() throws Exception {
-        final int[] count = {0};
+        final AtomicLong count = new AtomicLong();
+        // Write buffered changes first so that they are deleted as well.
+        flush();
+        ScanPolicy policy = new ScanPolicy(aerospikeClient.scanPolicyDefault);
+        policy.concurrentNodes = true;
+        policy.includeBinData = false;
         try {
             // Scan all records and delete them. As there is no immediate physical delete, performance may not be bad.
-            aerospikeClient.scanAll(null, namespace, setName, new ScanCallback() {
+            aerospikeClient.scanAll(policy, namespace, setName, new ScanCallback() {
                 public void scanCallback(Key key, Record record) throws AerospikeException {
                     aerospikeClient.delete(null, key);
-                    count[0]++;
+                    count.incrementAndGet();
                 }
             });
         } catch (Exception ex) {
             logger.error(ex.getMessage());
             throw ex;
+        } finally {
+            NearCache<T> cache = nearCache;
+            if (cache != null)
+                cache.clear();
         }
-        return count[0];
+        // Deleted keys would pass the key filter until the next scheduled rebuild.
+        KeyFilter<T> filter = keyFilter;
+        if (filter != null)
+            filter.rebuild();
+        return count.get();
     }
 }
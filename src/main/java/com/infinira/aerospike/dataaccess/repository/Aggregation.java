@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.Value;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stream UDF aggregation run on the server by AerospikeRepository.aggregate. Records are filtered, mapped and
+ * reduced on the nodes, and only the partial results of every node cross the network.
+ * Built-in aggregations take a field name, which is translated to its bin name by the repository.
+ * @param <R> result type
+ */
+public abstract class Aggregation<R> {
+    private final UdfModule module;
+    private final String functionName;
+    // Field passed as the first function argument, or null.
+    private final String fieldName;
+    private final Value[] arguments;
+
+    protected Aggregation(UdfModule module, String functionName, String fieldName, Value... arguments) {
+        Assert.notNull(module, "UDF module cannot be null");
+        Assert.hasText(functionName, "Function name cannot be empty");
+        this.module = module;
+        this.functionName = functionName;
+        this.fieldName = fieldName;
+        this.arguments = arguments != null ? arguments : new Value[0];
+    }
+
+    public UdfModule getModule() {
+        return module;
+    }
+
+    public String getFunctionName() {
+        return functionName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public Value[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Converts the reduced value returned by the server.
+     * @param value reduced value, or null if no record was aggregated
+     * @return result
+     */
+    protected abstract R toResult(Object value);
+
+    // Number of records.
+    public static Aggregation<Long> count() {
+        return new Aggregation<Long>(UdfModule.AGGREGATIONS, "count", null) {
+            @Override
+            protected Long toResult(Object value) {
+                return value != null ? ((Number) value).longValue() : 0L;
+            }
+        };
+    }
+
+    // Number of records that have a value for a field.
+    public static Aggregation<Long> count(String fieldName) {
+        Assert.hasText(fieldName, "Field name cannot be empty");
+        return new Aggregation<Long>(UdfModule.AGGREGATIONS, "count", fieldName) {
+            @Override
+            protected Long toResult(Object value) {
+                return value != null ? ((Number) value).longValue() : 0L;
+            }
+        };
+    }
+
+    // Sum of the numeric values of a field. Long for integer fields, Double otherwise. Null if there is no value.
+    public static Aggregation<Number> sum(String fieldName) {
+        return numeric("sum", fieldName);
+    }
+
+    // Smallest numeric value of a field. Null if there is no value.
+    public static Aggregation<Number> min(String fieldName) {
+        return numeric("min", fieldName);
+    }
+
+    // Largest numeric value of a field. Null if there is no value.
+    public static Aggregation<Number> max(String fieldName) {
+        return numeric("max", fieldName);
+    }
+
+    // Number of records by value of a field.
+    public static Aggregation<Map<Object, Long>> groupByCount(String fieldName) {
+        Assert.hasText(fieldName, "Field name cannot be empty");
+        return new Aggregation<Map<Object, Long>>(UdfModule.AGGREGATIONS, "group_by_count", fieldName) {
+            @Override
+            protected Map<Object, Long> toResult(Object value) {
+                Map<Object, Long> groups = new HashMap<Object, Long>();
+                if (value != null) {
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        groups.put(entry.getKey(), ((Number) entry.getValue()).longValue());
+                    }
+                }
+                return groups;
+            }
+        };
+    }
+
+    /**
+     * Creates an aggregation that calls a function of a custom module.
+     * @param module module of the function
+     * @param functionName stream UDF function name
+     * @param resultType type of the reduced value
+     * @param arguments function arguments after the stream
+     * @return aggregation
+     */
+    public static <R> Aggregation<R> of(UdfModule module, String functionName, final Class<R> resultType, Value... arguments) {
+        Assert.notNull(resultType, "Result type cannot be null");
+        return new Aggregation<R>(module, functionName, null, arguments) {
+            @Override
+            protected R toResult(Object value) {
+                return resultType.cast(value);
+            }
+        };
+    }
+
+    private static Aggregation<Number> numeric(String functionName, String fieldName) {
+        Assert.hasText(fieldName, "Field name cannot be empty");
+        return new Aggregation<Number>(UdfModule.AGGREGATIONS, functionName, fieldName) {
+            @Override
+            protected Number toResult(Object value) {
+                return (Number) value;
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.Entity;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the Repository interface. Every call returns immediately and the
+ * result is delivered through a CompletableFuture.
+ */
+public interface AsyncRepository<T extends Entity> {
+
+    // Insert a new record
+    CompletableFuture<Void> insert(T entity);
+
+    // Save a record
+    CompletableFuture<Void> save(T entity);
+
+    // Update a record
+    CompletableFuture<Void> update(T entity);
+
+    // Find a field value
+    CompletableFuture<Object> get(String keyValue, String fieldName);
+
+    // Find a list of field values for a given keyValue
+    CompletableFuture<Map<String, Object>> get(String keyValue, String... fieldNames);
+
+    // Find an entity for a given keyValue
+    CompletableFuture<T> findOne(String keyValue);
+
+    // Check if record exists
+    CompletableFuture<Boolean> exists(String keyValue);
+
+    // Find all entities for a given array of key values.
+    CompletableFuture<ArrayList<T>> findAll(String[] keyValues);
+
+    // Prepend value to an existing field's value.
+    CompletableFuture<T> prepend(T object, String fieldName, String value);
+
+    // Append value to an existing field's value.
+    CompletableFuture<T> append(T object, String fieldName, String value);
+
+    // Add integer value to an existing field's value.
+    CompletableFuture<T> add(T object, String fieldName, int value);
+
+    // Prepends values to all given fields
+    CompletableFuture<T> prepend(T object, Map<String, Object> values);
+
+    // Appends values to all given fields.
+    CompletableFuture<T> append(T object, Map<String, Object> values);
+
+    // Add integer bin values to existing record bin values.
+    CompletableFuture<T> add(T object, Map<String, Object> values);
+
+    // Delete a record. Completes with true if the record existed.
+    CompletableFuture<Boolean> delete(String keyValue);
+}
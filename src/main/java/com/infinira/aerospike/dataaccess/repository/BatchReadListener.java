@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.Entity;
+
+/**
+ * Receives batch read results as soon as the chunk of a key completes. Chunks complete in any order and
+ * on different threads, so implementations must be thread safe.
+ */
+public interface BatchReadListener<T extends Entity> {
+    /**
+     * Called once for every input key.
+     * @param index position of the key in the input array
+     * @param keyValue key value
+     * @param entity entity, or null if the record does not exist or the key is blank
+     */
+    void onRecord(int index, String keyValue, T entity);
+}
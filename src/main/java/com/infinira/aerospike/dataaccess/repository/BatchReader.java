@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.BatchPolicy;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel batch reader for large key arrays. Keys are grouped by the node that owns their partition and split
+ * into chunks, and the chunks are read concurrently by a pool of worker threads that is reused across reads.
+ * Results are aligned with the input keys. Blank keys and missing records are reported as misses.
+ */
+public class BatchReader<T extends Entity> implements Closeable {
+    private final static AerospikeClient aerospikeClient = AerospikeClientUtil.getClient();
+
+    private final AerospikeRepository<T> repository;
+    private final EntityBinMapper<T> mapper;
+    private final BatchReadOptions options;
+    private final PartitionMap partitionMap;
+    private final BatchPolicy policy;
+    private final ExecutorService workers;
+
+    BatchReader(AerospikeRepository<T> repository, EntityBinMapper<T> mapper, String namespace, BatchReadOptions options) {
+        Assert.notNull(options, "Batch read options cannot be null");
+        Assert.isTrue(options.getThreads() > 0, "Number of threads must be greater than 0");
+        Assert.isTrue(options.getChunkSize() > 0, "Chunk size must be greater than 0");
+        this.repository = repository;
+        this.mapper = mapper;
+        this.options = options;
+        this.partitionMap = PartitionMap.forNamespace(namespace);
+        this.policy = new BatchPolicy(AerospikeClientUtil.getBatchPolicy());
+        // A chunk has keys of a single node, unless the partition map is not available. Let the client
+        // read the nodes of a mixed chunk in parallel.
+        this.policy.maxConcurrentThreads = 0;
+        this.workers = Executors.newFixedThreadPool(options.getThreads(), AerospikeClientUtil.newDaemonThreadFactory("aerospike-batch-"));
+    }
+
+    /**
+     * Batch read result. Entities are aligned with the input keys.
+     */
+    public static class Result<T extends Entity> {
+        private final List<T> entities;
+        private final int found;
+        private final long elapsedMillis;
+
+        Result(List<T> entities, int found, long elapsedMillis) {
+            this.entities = entities;
+            this.found = found;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        // Number of input keys.
+        public int size() {
+            return entities.size();
+        }
+
+        // Entity of the input key at a given position, or null on a miss.
+        public T get(int index) {
+            return entities.get(index);
+        }
+
+        public boolean isFound(int index) {
+            return entities.get(index) != null;
+        }
+
+        // Entities aligned with the input keys. Misses are null.
+        public List<T> getEntities() {
+            return entities;
+        }
+
+        // Entities of the existing records in input order.
+        public ArrayList<T> getFound() {
+            ArrayList<T> result = new ArrayList<T>(found);
+            for (T entity : entities) {
+                if (entity != null)
+                    result.add(entity);
+            }
+            return result;
+        }
+
+        public int getFoundCount() {
+            return found;
+        }
+
+        public int getMissCount() {
+            return entities.size() - found;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    /**
+     * Reads the entities of all keys.
+     * @param keyValues key values
+     * @return result aligned with the key values
+     */
+    public Result<T> read(String[] keyValues) {
+        return read(keyValues, (String[]) null);
+    }
+
+    /**
+     * Reads partial entities with only the given fields of all keys.
+     * @param keyValues key values
+     * @param fieldNames fields to read. All fields are read if null or empty.
+     * @return result aligned with the key values
+     */
+    public Result<T> read(String[] keyValues, String... fieldNames) {
+        long start = System.currentTimeMillis();
+        final List<T> entities = new ArrayList<T>(keyValues.length);
+        for (int i = 0; i < keyValues.length; i++) {
+            entities.add(null);
+        }
+        // Every chunk sets its own positions, so the list is never resized or written concurrently at the same index.
+        read(keyValues, new BatchReadListener<T>() {
+            @Override
+            public void onRecord(int index, String keyValue, T entity) {
+                entities.set(index, entity);
+            }
+        }, fieldNames);
+        int found = 0;
+        for (T entity : entities) {
+            if (entity != null)
+                found++;
+        }
+        return new Result<T>(entities, found, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Reads all keys and streams the entities to a listener as each chunk completes. Returns when all chunks
+     * are done.
+     * @param keyValues key values
+     * @param listener receives every key with its entity or null on a miss
+     * @param fieldNames fields to read. All fields are read if null or empty.
+     * @throws com.aerospike.client.AerospikeException of the first failed chunk, after all other chunks completed.
+     */
+    public void read(String[] keyValues, final BatchReadListener<T> listener, String... fieldNames) {
+        Assert.notNull(keyValues, "Key values cannot be null");
+        Assert.notNull(listener, "Listener cannot be null");
+        final String[] binNames = fieldNames == null || fieldNames.length == 0 ? null : mapper.toProjection(fieldNames);
+        List<int[]> chunks = chunk(keyValues, listener);
+        if (chunks.size() == 1) {
+            // Small batch. Read it on the calling thread.
+            readChunk(keyValues, chunks.get(0), binNames, listener);
+            return;
+        }
+        final String[] values = keyValues;
+        List<Future<?>> futures = new ArrayList<Future<?>>(chunks.size());
+        for (final int[] chunk : chunks) {
+            futures.add(workers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    readChunk(values, chunk, binNames, listener);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<?> pending : futures) {
+                    pending.cancel(true);
+                }
+                throw new IllegalStateException("Interrupted while waiting for batch read", e);
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                            : new IllegalStateException("Batch read failed", e.getCause());
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    // Group key positions by owner node and split every group into chunks. Blank keys are reported as misses.
+    // Buffered writes of the keys are flushed first.
+    private List<int[]> chunk(String[] keyValues, BatchReadListener<T> listener) {
+        Map<String, List<Integer>> byNode = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < keyValues.length; i++) {
+            if (keyValues[i] == null || keyValues[i].trim().length() == 0) {
+                listener.onRecord(i, keyValues[i], null);
+                continue;
+            }
+            repository.flushPending(keyValues[i]);
+            Node node = partitionMap.getMasterNode(repository.createKey(keyValues[i]));
+            String nodeName = node != null ? node.getName() : "";
+            List<Integer> group = byNode.get(nodeName);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                byNode.put(nodeName, group);
+            }
+            group.add(i);
+        }
+        List<int[]> chunks = new ArrayList<int[]>();
+        int chunkSize = options.getChunkSize();
+        for (List<Integer> group : byNode.values()) {
+            for (int offset = 0; offset < group.size(); offset += chunkSize) {
+                int[] chunk = new int[Math.min(chunkSize, group.size() - offset)];
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = group.get(offset + i);
+                }
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+
+    private void readChunk(String[] keyValues, int[] chunk, String[] binNames, BatchReadListener<T> listener) {
+        Key[] keys = new Key[chunk.length];
+        for (int i = 0; i < chunk.length; i++) {
+            keys[i] = repository.createKey(keyValues[chunk[i]]);
+        }
+        Record[] records = binNames == null ? aerospikeClient.get(policy, keys) : aerospikeClient.get(policy, keys, binNames);
+        try {
+            for (int i = 0; i < chunk.length; i++) {
+                T entity = binNames == null ? mapper.toEntity(records[i]) : mapper.toPartialEntity(records[i], binNames);
+                listener.onRecord(chunk[i], keyValues[chunk[i]], entity);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create " + mapper.getMetadata().getDomainType().getName(), e);
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Cannot create " + mapper.getMetadata().getDomainType().getName(), e);
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+}
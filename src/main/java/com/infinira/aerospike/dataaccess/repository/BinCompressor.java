@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of large String and byte[] bin values. Values at or above the size threshold are stored as
+ * a blob that starts with a compressed marker header (see BinMarker) and the value type, followed by the deflated
+ * bytes. User bytes are tagged by the mapper before compression, so a decompressed byte[] is never taken for
+ * another blob. Values that do not get smaller are
+ * stored as they are. Compressed blobs are recognized on read regardless of the compressor configuration, so
+ * records stay readable after compression is disabled.
+ */
+public class BinCompressor {
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    // Marker header and value type.
+    private final static int HEADER_LENGTH = BinMarker.LENGTH + 1;
+    private final static byte TYPE_STRING = 0;
+    private final static byte TYPE_BYTES = 1;
+
+    // Default minimum value size in bytes to compress.
+    public final static int DEFAULT_THRESHOLD = 1024;
+
+    private final int threshold;
+    private final int level;
+    // Bins to compress. Empty means all bins.
+    private final Set<String> binNames;
+
+    // Statistics
+    private final AtomicLong compressedValues = new AtomicLong();
+    private final AtomicLong skippedValues = new AtomicLong();
+    private final AtomicLong originalBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    public BinCompressor() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a compressor.
+     * @param threshold minimum value size in bytes to compress
+     * @param level deflate level, 1 (fastest) to 9 (smallest)
+     * @param binNames bins to compress. If none are given, all bins are compressed.
+     */
+    public BinCompressor(int threshold, int level, String... binNames) {
+        Assert.isTrue(threshold > 0, "Threshold must be greater than 0");
+        this.threshold = threshold;
+        this.level = level;
+        this.binNames = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(binNames)));
+    }
+
+    /**
+     * Compresses a bin value if it is eligible.
+     * @param binName bin name
+     * @param value bin value
+     * @return compressed blob or the original value
+     */
+    Object encode(String binName, Object value) {
+        if (!binNames.isEmpty() && !binNames.contains(binName))
+            return value;
+        byte type;
+        byte[] bytes;
+        if (value instanceof String) {
+            // A char takes at most 3 bytes in UTF-8, so short strings are skipped without encoding them.
+            if (((String) value).length() * 3 < threshold)
+                return value;
+            type = TYPE_STRING;
+            bytes = ((String) value).getBytes(UTF8);
+        } else if (value instanceof byte[]) {
+            type = TYPE_BYTES;
+            bytes = (byte[]) value;
+        } else {
+            return value;
+        }
+        if (bytes.length < threshold)
+            return value;
+
+        byte[] compressed = deflate(type, bytes);
+        if (compressed.length >= bytes.length) {
+            skippedValues.incrementAndGet();
+            return value;
+        }
+        compressedValues.incrementAndGet();
+        originalBytes.addAndGet(bytes.length);
+        compressedBytes.addAndGet(compressed.length);
+        return compressed;
+    }
+
+    private byte[] deflate(byte type, byte[] bytes) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + HEADER_LENGTH);
+            out.write(BinMarker.header(BinMarker.COMPRESSED), 0, BinMarker.LENGTH);
+            out.write(type);
+            byte[] buffer = new byte[Math.min(bytes.length, 8192)];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Checks if a value read from the database is a compressed blob.
+     * @param value bin value
+     * @return true if compressed
+     */
+    static boolean isCompressed(Object value) {
+        return BinMarker.is(value, BinMarker.COMPRESSED) && ((byte[]) value).length >= HEADER_LENGTH;
+    }
+
+    /**
+     * Decompresses a compressed blob.
+     * @param compressed compressed blob
+     * @return original String or byte[] value
+     */
+    static Object decode(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, HEADER_LENGTH, compressed.length - HEADER_LENGTH);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalStateException("Truncated compressed bin value");
+                out.write(buffer, 0, length);
+            }
+            byte[] bytes = out.toByteArray();
+            return compressed[BinMarker.LENGTH] == TYPE_STRING ? new String(bytes, UTF8) : bytes;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed bin value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public Set<String> getBinNames() {
+        return binNames;
+    }
+
+    // Number of values stored compressed.
+    public long getCompressedValues() {
+        return compressedValues.get();
+    }
+
+    // Number of values above the threshold that did not get smaller.
+    public long getSkippedValues() {
+        return skippedValues.get();
+    }
+
+    // Size of compressed values before compression.
+    public long getOriginalBytes() {
+        return originalBytes.get();
+    }
+
+    // Size of compressed values after compression, including the header.
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    // Compressed size divided by original size. 1 if nothing was compressed.
+    public double getCompressionRatio() {
+        long original = originalBytes.get();
+        return original > 0 ? (double) compressedBytes.get() / original : 1.0;
+    }
+}
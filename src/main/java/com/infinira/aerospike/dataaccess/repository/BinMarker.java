@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import java.util.Arrays;
+
+/**
+ * Marker header of the blobs written by the entity mapper: the prefix 0xA5 'I', the blob type and the format
+ * version. User byte arrays that start with the prefix are stored behind a raw header, so every stored blob
+ * that starts with the prefix was written by the mapper and has a known type.
+ */
+final class BinMarker {
+    // Blob types
+    final static byte KRYO = 'K';
+    final static byte COMPRESSED = 'Z';
+    final static byte RAW = 'R';
+    final static byte VERSION = 1;
+    // Header length, including the prefix.
+    final static int LENGTH = 4;
+
+    private final static byte PREFIX_0 = (byte) 0xA5;
+    private final static byte PREFIX_1 = 'I';
+
+    private BinMarker() {
+    }
+
+    /**
+     * Gets the header of a blob type.
+     * @param type blob type
+     * @return header bytes
+     */
+    static byte[] header(byte type) {
+        return new byte[] {PREFIX_0, PREFIX_1, type, VERSION};
+    }
+
+    /**
+     * Checks if a value is a blob of a given type.
+     * @param value bin value
+     * @param type blob type
+     * @return true if the value starts with the header of the type
+     */
+    static boolean is(Object value, byte type) {
+        if (!(value instanceof byte[]))
+            return false;
+        byte[] bytes = (byte[]) value;
+        return bytes.length >= LENGTH && bytes[0] == PREFIX_0 && bytes[1] == PREFIX_1 && bytes[2] == type
+                && bytes[3] == VERSION;
+    }
+
+    /**
+     * Prepends the raw header to user bytes that could be taken for a blob of the mapper. Other bytes are
+     * returned as they are.
+     * @param bytes user bytes
+     * @return bytes to store
+     */
+    static byte[] toRaw(byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != PREFIX_0 || bytes[1] != PREFIX_1)
+            return bytes;
+        byte[] blob = new byte[LENGTH + bytes.length];
+        System.arraycopy(header(RAW), 0, blob, 0, LENGTH);
+        System.arraycopy(bytes, 0, blob, LENGTH, bytes.length);
+        return blob;
+    }
+
+    /**
+     * Removes the raw header.
+     * @param blob raw blob
+     * @return user bytes
+     */
+    static byte[] fromRaw(byte[] blob) {
+        return Arrays.copyOfRange(blob, LENGTH, blob.length);
+    }
+}
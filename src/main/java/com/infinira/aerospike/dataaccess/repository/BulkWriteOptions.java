@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Bulk write configuration.
+ */
+public class BulkWriteOptions {
+    // Number of worker threads writing in parallel.
+    private int threads = 16;
+    // Number of records handed to a worker at a time. All records in a chunk belong to the same node.
+    private int chunkSize = 500;
+    // Throughput cap in records per second. 0 means unlimited.
+    private long maxRecordsPerSecond = 0;
+    // Maximum number of individual failures kept in the result. All failures are counted.
+    private int maxFailuresReported = 1000;
+
+    public BulkWriteOptions() {
+    }
+
+    public BulkWriteOptions(int threads, int chunkSize, long maxRecordsPerSecond) {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.maxRecordsPerSecond = maxRecordsPerSecond;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long getMaxRecordsPerSecond() {
+        return maxRecordsPerSecond;
+    }
+
+    public void setMaxRecordsPerSecond(long maxRecordsPerSecond) {
+        this.maxRecordsPerSecond = maxRecordsPerSecond;
+    }
+
+    public int getMaxFailuresReported() {
+        return maxFailuresReported;
+    }
+
+    public void setMaxFailuresReported(int maxFailuresReported) {
+        this.maxFailuresReported = maxFailuresReported;
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.cluster.Node;
+import com.infinira.aerospike.dataaccess.exception.BulkWriteException;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import com.infinira.aerospike.dataaccess.util.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel bulk writer. Records are grouped by the node that owns their partition and written in chunks by a
+ * bounded pool of worker threads. Chunks of different nodes are interleaved so that all nodes are kept busy.
+ * A failed record is reported in the result and does not stop the rest of the batch. If the batch is interrupted
+ * or a worker fails, BulkWriteException is thrown and counts every record that was not written as failed.
+ * Progress counters can be read from another thread while a bulk write is running. The worker pool is created
+ * on first use and reused by all bulk writes of the writer until it is closed.
+ */
+public class BulkWriter<T extends Entity> implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(BulkWriter.class);
+
+    private final AerospikeRepository<T> repository;
+    private final BulkWriteOptions options;
+    private final PartitionMap partitionMap;
+
+    // Progress counters
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Worker pool. Guarded by this.
+    private ExecutorService workers;
+    private boolean closed;
+
+    // Counts of a single bulk write, as several bulk writes can share the writer.
+    private static class Progress {
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<String, Throwable>());
+        // Set when the bulk write is stopped. Workers stop before their next record.
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        long getUnwritten() {
+            return total.get() - succeeded.get() - failed.get();
+        }
+    }
+
+    BulkWriter(AerospikeRepository<T> repository, String namespace, BulkWriteOptions options) {
+        Assert.notNull(options, "Bulk write options cannot be null");
+        Assert.isTrue(options.getThreads() > 0, "Number of threads must be greater than 0");
+        Assert.isTrue(options.getChunkSize() > 0, "Chunk size must be greater than 0");
+        this.repository = repository;
+        this.options = options;
+        this.partitionMap = PartitionMap.forNamespace(namespace);
+    }
+
+    /**
+     * Bulk write result.
+     */
+    public static class Result {
+        private final long total;
+        private final long succeeded;
+        private final long failed;
+        private final long elapsedMillis;
+        private final Map<String, Throwable> failures;
+
+        Result(long total, long succeeded, long failed, long elapsedMillis, Map<String, Throwable> failures) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+            this.failures = failures;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        // Failures by key value. Limited to BulkWriteOptions.maxFailuresReported entries.
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedMillis > 0 ? (succeeded + failed) * 1000.0 / elapsedMillis : 0;
+        }
+    }
+
+    // Insert all objects. Fails records that already exist.
+    public Result insertAll(Collection<T> objects) {
+        return write("INSERT", objects);
+    }
+
+    // Create or update all objects.
+    public Result saveAll(Collection<T> objects) {
+        return write("SAVE", objects);
+    }
+
+    // Update all objects. Fails records that do not exist.
+    public Result updateAll(Collection<T> objects) {
+        return write("UPDATE", objects);
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // Records submitted but not yet written.
+    public long getPending() {
+        return submitted.get() - succeeded.get() - failed.get();
+    }
+
+    /**
+     * Stops the worker pool. Bulk writes in progress are completed first.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
+    private synchronized ExecutorService getWorkers() {
+        if (closed)
+            throw new IllegalStateException("Bulk writer is closed");
+        if (workers == null)
+            workers = Executors.newFixedThreadPool(options.getThreads(), AerospikeClientUtil.newDaemonThreadFactory("aerospike-bulk-"));
+        return workers;
+    }
+
+    private Result write(final String opType, Collection<T> objects) {
+        Assert.notNull(objects, "Objects to write cannot be null");
+        long start = System.currentTimeMillis();
+        final Progress progress = new Progress();
+        final RateLimiter rateLimiter = new RateLimiter(options.getMaxRecordsPerSecond());
+
+        List<List<T>> chunks = chunk(objects, progress);
+        try {
+            if (chunks.size() == 1) {
+                // Small batch. Write it on the calling thread.
+                writeChunk(opType, chunks.get(0), rateLimiter, progress);
+            } else if (!chunks.isEmpty()) {
+                writeChunks(opType, chunks, rateLimiter, progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unwritten("Bulk write interrupted", progress, e);
+        }
+        long done = progress.succeeded.get();
+        long failedCount = progress.failed.get();
+        return new Result(done + failedCount, done, failedCount, System.currentTimeMillis() - start, progress.failures);
+    }
+
+    private void writeChunks(final String opType, List<List<T>> chunks, final RateLimiter rateLimiter,
+                             final Progress progress) throws InterruptedException {
+        ExecutorService pool = getWorkers();
+        List<Future<?>> futures = new ArrayList<Future<?>>(chunks.size());
+        try {
+            for (final List<T> chunk : chunks) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        writeChunk(opType, chunk, rateLimiter, progress);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            stop(futures, progress);
+            logger.error("Bulk write worker failed", e.getCause());
+            throw unwritten("Bulk write worker failed", progress, e.getCause());
+        } catch (InterruptedException e) {
+            stop(futures, progress);
+            throw e;
+        }
+    }
+
+    // Stops all chunks and waits until running chunks finished their current record, so that the counts are final.
+    private void stop(List<Future<?>> futures, Progress progress) {
+        progress.stopped.set(true);
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    // Builds the exception of an incomplete bulk write. Records not written are counted as failed.
+    private BulkWriteException unwritten(String message, Progress progress, Throwable cause) {
+        long unwritten = Math.max(0, progress.getUnwritten());
+        failed.addAndGet(unwritten);
+        long failedCount = progress.failed.get() + unwritten;
+        return new BulkWriteException(message + ": " + unwritten + " records not written", failedCount,
+                progress.failures, cause);
+    }
+
+    // Group objects by owner node and split every group into chunks. Chunks of different nodes are interleaved.
+    private List<List<T>> chunk(Collection<T> objects, Progress progress) {
+        Map<String, List<T>> byNode = new LinkedHashMap<String, List<T>>();
+        for (T object : objects) {
+            if (object == null)
+                continue;
+            submitted.incrementAndGet();
+            progress.total.incrementAndGet();
+            String keyValue = repository.getKeyValue(object);
+            if (keyValue == null) {
+                recordFailure(null, new IllegalArgumentException("Key value cannot be null"), progress);
+                continue;
+            }
+            Node node = partitionMap.getMasterNode(repository.createKey(keyValue));
+            String nodeName = node != null ? node.getName() : "";
+            List<T> group = byNode.get(nodeName);
+            if (group == null) {
+                group = new ArrayList<T>();
+                byNode.put(nodeName, group);
+            }
+            group.add(object);
+        }
+        List<List<T>> chunks = new ArrayList<List<T>>();
+        int chunkSize = options.getChunkSize();
+        boolean added = true;
+        for (int offset = 0; added; offset += chunkSize) {
+            added = false;
+            for (List<T> group : byNode.values()) {
+                if (offset < group.size()) {
+                    chunks.add(group.subList(offset, Math.min(offset + chunkSize, group.size())));
+                    added = true;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    // Writes a chunk. Stops before the next record if the bulk write is stopped or the thread is interrupted.
+    private void writeChunk(String opType, List<T> chunk, RateLimiter rateLimiter, Progress progress) throws InterruptedException {
+        for (T object : chunk) {
+            if (progress.stopped.get())
+                return;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            rateLimiter.acquire();
+            try {
+                // Bypass the write-behind buffer, so that results count records that were actually written.
+                repository.change(opType, object, false);
+                succeeded.incrementAndGet();
+                progress.succeeded.incrementAndGet();
+            } catch (Exception e) {
+                recordFailure(repository.getKeyValue(object), e, progress);
+            }
+        }
+    }
+
+    private void recordFailure(String keyValue, Throwable t, Progress progress) {
+        failed.incrementAndGet();
+        progress.failed.incrementAndGet();
+        if (progress.failures.size() < options.getMaxFailuresReported())
+            progress.failures.put(String.valueOf(keyValue), t);
+    }
+}
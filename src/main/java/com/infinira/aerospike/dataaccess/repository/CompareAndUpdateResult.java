@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.Entity;
+
+/**
+ * Result of a compare-and-update call.
+ */
+public class CompareAndUpdateResult<T extends Entity> {
+    // Updated entity. Null if the record does not exist.
+    private final T entity;
+    // Number of times the update was retried because of a concurrent change.
+    private final int retries;
+    // True if the mutator changed at least one field.
+    private final boolean updated;
+
+    CompareAndUpdateResult(T entity, int retries, boolean updated) {
+        this.entity = entity;
+        this.retries = retries;
+        this.updated = updated;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public boolean isUpdated() {
+        return updated;
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.Value;
+import com.aerospike.helper.query.Qualifier;
+import com.infinira.aerospike.dataaccess.model.BinDecoder;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import com.infinira.aerospike.dataaccess.model.EntityMetadata;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps entities to Aerospike bins and records back to entities. Shared by the synchronous and
+ * asynchronous repositories so that both store data in exactly the same format.
+ * Entities keep the record bins as they are; compressed and Kryo encoded values are decoded when a field
+ * is first read, and written back as they are if the field is never read.
+ */
+class EntityBinMapper<T extends Entity> implements BinDecoder {
+    // Cached domain class metadata
+    private final EntityMetadata<T> metadata;
+    // Optional compression of large values
+    private volatile BinCompressor compressor;
+
+    EntityBinMapper(Class<T> domainType) {
+        this.metadata = EntityMetadata.forClass(domainType);
+    }
+
+    EntityMetadata<T> getMetadata() {
+        return metadata;
+    }
+
+    BinCompressor getCompressor() {
+        return compressor;
+    }
+
+    void setCompressor(BinCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Gets the primary key value of an entity.
+     * @param object entity
+     * @return key value
+     */
+    String getKeyValue(T object) {
+        return metadata.getKeyValue(object);
+    }
+
+    /**
+     * Builds the bins to write for an entity.
+     * @param object entity
+     * @param changedOnly if true and the entity was read from the database, only changed fields are written.
+     *                    Otherwise all fields held by the entity are written, which for a partial entity are
+     *                    the read and the changed fields only.
+     * @return array of bins
+     */
+    Bin[] toBins(T object, boolean changedOnly) {
+        Map<String, Object> bins = metadata.getBins(object);
+        // Find fields to save.
+        Set<String> fieldNames;
+        if (changedOnly && metadata.getGeneration(object) > 0)
+            fieldNames = metadata.getChangedFields(object);     //It is enough to update only changed fields, not all.
+        else
+            fieldNames = bins.keySet();                         //For insert and update
+
+        // Create Bin array
+        Bin[] binArray = new Bin[fieldNames.size()];
+        int i = 0;
+        for (String fieldName : fieldNames) {
+            if (fieldName == null)
+                continue;
+            // Values read from the database and never accessed are written back as they are, without decoding.
+            if (metadata.isEncoded(object, fieldName))
+                binArray[i++] = new Bin(metadata.toBinName(fieldName), bins.get(fieldName));
+            else
+                binArray[i++] = toBin(fieldName, bins.get(fieldName));
+        }
+        if (i < binArray.length) {
+            Bin[] trimmed = new Bin[i];
+            System.arraycopy(binArray, 0, trimmed, 0, i);
+            return trimmed;
+        }
+        return binArray;
+    }
+
+    /**
+     * Builds a single bin from a field name and an entity value.
+     * @param fieldName field name. The bin is named with the bin alias of the field if it has one.
+     * @param value entity value
+     * @return bin
+     */
+    Bin toBin(String fieldName, Object value) {
+        String binName = metadata.toBinName(fieldName);
+        // Special consideration for double to store it as double instead of serialized object.
+        if (value instanceof Double)
+            return new Bin(binName, ((Double) value).doubleValue());
+        // Serialize values that are not native Aerospike types with Kryo instead of Java serialization.
+        if (!KryoCodec.isNative(value))
+            value = KryoCodec.forClass(metadata.getDomainType()).encode(value);
+        else if (value instanceof byte[])
+            // User bytes that look like a blob of the mapper get a raw header, so that they are never decoded.
+            value = BinMarker.toRaw((byte[]) value);
+        BinCompressor binCompressor = compressor;
+        if (binCompressor != null)
+            value = binCompressor.encode(fieldName, value);
+        return new Bin(binName, value);
+    }
+
+    /**
+     * Gets the database bin name of a field.
+     * @param fieldName field name
+     * @return bin name
+     */
+    String toBinName(String fieldName) {
+        return metadata.toBinName(fieldName);
+    }
+
+    /**
+     * Gets the database bin names of fields.
+     * @param fieldNames field names
+     * @return bin names
+     */
+    String[] toBinNames(String... fieldNames) {
+        if (!metadata.hasBinAliases())
+            return fieldNames;
+        String[] binNames = new String[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            binNames[i] = metadata.toBinName(fieldNames[i]);
+        }
+        return binNames;
+    }
+
+    /**
+     * Gets the bin names to read for a projection. The key field is always read so that a partial entity
+     * can be written back.
+     * @param fieldNames projected field names
+     * @return bin names
+     */
+    String[] toProjection(String... fieldNames) {
+        Assert.notEmpty(fieldNames, "Projected field names cannot be empty");
+        String keyName = metadata.getKeyName();
+        boolean hasKey = keyName == null;
+        for (String fieldName : fieldNames) {
+            Assert.notNull(fieldName, "Projected field name cannot be null");
+            hasKey |= fieldName.equals(keyName);
+        }
+        String[] binNames = new String[hasKey ? fieldNames.length : fieldNames.length + 1];
+        for (int i = 0; i < fieldNames.length; i++) {
+            binNames[i] = metadata.toBinName(fieldNames[i]);
+        }
+        if (!hasKey)
+            binNames[fieldNames.length] = metadata.toBinName(keyName);
+        return binNames;
+    }
+
+    /**
+     * Renames qualifier fields to bin names.
+     * @param qualifiers qualifiers on field names
+     * @return qualifiers on bin names
+     */
+    Qualifier[] toBinQualifiers(Qualifier... qualifiers) {
+        if (qualifiers == null || !metadata.hasBinAliases())
+            return qualifiers;
+        Qualifier[] result = new Qualifier[qualifiers.length];
+        for (int i = 0; i < qualifiers.length; i++) {
+            Qualifier qualifier = qualifiers[i];
+            result[i] = new Qualifier(toBinName(qualifier.getField()), qualifier.getOperation(), qualifier.getValue1(), qualifier.getValue2());
+        }
+        return result;
+    }
+
+    /**
+     * Converts a list or map element to a value for collection bin operations.
+     * @param value element
+     * @return value
+     */
+    Value toElementValue(Object value) {
+        if (!KryoCodec.isNative(value))
+            throw new IllegalArgumentException("List and map operations support native values only: " + value.getClass().getName());
+        return Value.get(value);
+    }
+
+    /**
+     * Builds a bin operation for a given operation type.
+     * @param opType APPEND, PREPEND or ADD
+     * @param bin bin to operate on
+     * @return operation
+     */
+    Operation toOperation(String opType, Bin bin) {
+        if (opType.equals("PREPEND"))
+            return Operation.prepend(bin);
+        else if (opType.equals("APPEND"))
+            return Operation.append(bin);
+        else if (opType.equals("ADD"))
+            return Operation.add(bin);
+        throw new IllegalArgumentException("Unsupported operation type: " + opType);
+    }
+
+    /**
+     * Builds bin operations for all given values followed by a get of the whole record.
+     * @param opType APPEND, PREPEND or ADD
+     * @param values map of fields and values
+     * @return operations
+     */
+    Operation[] toOperations(String opType, Map<String, Object> values) {
+        Operation[] operations = new Operation[values.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            operations[i++] = toOperation(opType, new Bin(toBinName(entry.getKey()), entry.getValue()));
+        }
+        // Last operation is to get the record to return.
+        operations[i] = Operation.get();
+        return operations;
+    }
+
+    /**
+     * Record to Entity conversion method
+     * @param record Record from database
+     * @return Return entity
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     */
+    T toEntity(Record record) throws IllegalAccessException, InstantiationException {
+        if (record == null)
+            return null;
+        // Create an object instance and set bins, generation, expiration and isFromDB values.
+        // Keyname is already in the bins.
+        T entity = metadata.newInstance(metadata.toFieldNames(record.bins), record.generation, record.expiration);
+        metadata.setDecoder(entity, this);
+        return entity;
+    }
+
+    /**
+     * Converts a projected record to a partial entity. Bins outside of the projection are dropped, in case
+     * the database returned more than requested.
+     * @param record Record from database
+     * @param binNames projected bin names from toProjection
+     * @return partial entity
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     */
+    T toPartialEntity(Record record, String[] binNames) throws IllegalAccessException, InstantiationException {
+        if (record == null)
+            return null;
+        T entity = metadata.newInstance(projectBins(record, binNames), record.generation, record.expiration);
+        metadata.setDecoder(entity, this);
+        metadata.markPartial(entity);
+        return entity;
+    }
+
+    /**
+     * Record to Entity conversion that rebinds the entity of a previous record instead of creating one.
+     * @param record Record from database
+     * @param binNames projected bin names from toProjection, or null if all bins were read
+     * @param reuse entity of the previous record, or null for the first record
+     * @return reused entity, valid until it is rebound to the next record
+     * @throws IllegalAccessException
+     * @throws InstantiationException
+     */
+    T toReusedEntity(Record record, String[] binNames, T reuse) throws IllegalAccessException, InstantiationException {
+        if (record == null)
+            return null;
+        T entity = reuse != null ? reuse : metadata.newInstance();
+        Map<String, Object> bins = binNames == null ? metadata.toFieldNames(record.bins) : projectBins(record, binNames);
+        metadata.rebind(entity, bins, record.generation, record.expiration, this);
+        if (binNames != null)
+            metadata.markPartial(entity);
+        return entity;
+    }
+
+    // Projected bins by field name. Bins outside of the projection are dropped.
+    private Map<String, Object> projectBins(Record record, String[] binNames) {
+        Map<String, Object> bins = new HashMap<String, Object>();
+        for (String binName : binNames) {
+            Object value = record.bins != null ? record.bins.get(binName) : null;
+            if (value != null)
+                bins.put(metadata.toFieldName(binName), value);
+        }
+        return bins;
+    }
+
+    @Override
+    public boolean isEncoded(Object value) {
+        return BinCompressor.isCompressed(value) || KryoCodec.isEncoded(value) || BinMarker.is(value, BinMarker.RAW);
+    }
+
+    @Override
+    public Object decode(Object value) {
+        return fromBinValue(value);
+    }
+
+    /**
+     * Decodes a single bin value read from the database.
+     * @param value bin value
+     * @return decoded value
+     */
+    Object fromBinValue(Object value) {
+        if (BinCompressor.isCompressed(value))
+            value = BinCompressor.decode((byte[]) value);
+        if (KryoCodec.isEncoded(value))
+            value = KryoCodec.forClass(metadata.getDomainType()).decode((byte[]) value);
+        else if (BinMarker.is(value, BinMarker.RAW))
+            value = BinMarker.fromRaw((byte[]) value);
+        return value;
+    }
+
+    /**
+     * Copies a record so that changes of entities mapped from the copy never reach the original.
+     * @param record record
+     * @return copy
+     */
+    static Record copyRecord(Record record) {
+        return new Record(record.bins != null ? copyBins(record.bins) : null, record.generation, record.expiration);
+    }
+
+    // Copies bins deeply enough that changes of the copy never reach the cached record.
+    static Map<String, Object> copyBins(Map<String, Object> bins) {
+        Map<String, Object> result = new HashMap<String, Object>(bins.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> entry : bins.entrySet()) {
+            result.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof byte[])
+            return ((byte[]) value).clone();
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> result = new ArrayList<Object>(list.size());
+            for (Object element : list) {
+                result.add(copyValue(element));
+            }
+            return result;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> result = new HashMap<Object, Object>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                result.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return result;
+        }
+        // Strings, numbers and other database values are immutable.
+        return value;
+    }
+}
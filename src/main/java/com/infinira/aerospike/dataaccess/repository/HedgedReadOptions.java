@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Hedged read configuration.
+ */
+public class HedgedReadOptions {
+    // Read latency percentile after which a hedge is sent.
+    private double percentile = 95.0;
+    // Hedge delay used until enough latency samples are recorded.
+    private long initialDelayMillis = 10;
+    // Bounds of the hedge delay.
+    private long minDelayMillis = 1;
+    private long maxDelayMillis = 100;
+    // Number of recent reads the percentile is computed over.
+    private int sampleWindow = 1024;
+
+    public HedgedReadOptions() {
+    }
+
+    public HedgedReadOptions(double percentile, long minDelayMillis, long maxDelayMillis) {
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public void setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public void setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getSampleWindow() {
+        return sampleWindow;
+    }
+
+    public void setSampleWindow(int sampleWindow) {
+        this.sampleWindow = sampleWindow;
+    }
+}
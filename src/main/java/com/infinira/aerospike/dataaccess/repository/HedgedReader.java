@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.Replica;
+import com.infinira.aerospike.dataaccess.util.LatencyTracker;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged single record reader. A read is sent to the master node first. If it has not answered within the
+ * configured percentile of recent read latencies, a second read is sent with the MASTER_PROLES replica policy
+ * and the first answer wins; the result of the losing read is discarded.
+ * Both reads are sent from the calling thread with the asynchronous client, so no thread is handed a read and
+ * the number of reads in flight is bounded by asyncMaxCommands of the client configuration.
+ * Hedging is best-effort: MASTER_PROLES alternates between the master and its replicas, so some hedges go to
+ * the master node again. The client must be configured with requestProleReplicas, otherwise every hedge goes
+ * to the master node.
+ */
+public class HedgedReader {
+    // Number of reads after which the hedge delay is computed again.
+    private final static int DELAY_REFRESH_READS = 128;
+
+    private final AsyncClient client;
+    private final HedgedReadOptions options;
+    private final Policy hedgePolicy;
+    private final LatencyTracker latencies;
+    private volatile long delayNanos;
+    private final AtomicInteger readsSinceRefresh = new AtomicInteger();
+
+    // Statistics
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    HedgedReader(AsyncClient client, HedgedReadOptions options) {
+        Assert.notNull(options, "Hedged read options cannot be null");
+        Assert.isTrue(options.getPercentile() > 0 && options.getPercentile() < 100, "Percentile must be between 0 and 100");
+        Assert.isTrue(options.getMinDelayMillis() <= options.getMaxDelayMillis(), "Min delay cannot be greater than max delay");
+        this.client = client;
+        this.options = options;
+        this.hedgePolicy = new Policy(client.readPolicyDefault);
+        this.hedgePolicy.replica = Replica.MASTER_PROLES;
+        this.latencies = new LatencyTracker(options.getSampleWindow());
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(clamp(options.getInitialDelayMillis()));
+    }
+
+    /**
+     * Reads a record, hedging slow reads.
+     * @param key record key
+     * @param binNames bins to read, all bins if empty
+     * @return record or null if not found
+     */
+    Record get(Key key, String... binNames) {
+        reads.incrementAndGet();
+        Call call = new Call();
+        send(null, key, binNames, new Listener(call, true));
+        try {
+            if (!call.await(delayNanos) && call.addRead()) {
+                hedges.incrementAndGet();
+                send(hedgePolicy, key, binNames, new Listener(call, false));
+            }
+            call.await(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AerospikeException("Interrupted while waiting for read", e);
+        }
+        return call.getRecord();
+    }
+
+    private void send(Policy policy, Key key, String[] binNames, Listener listener) {
+        try {
+            if (binNames == null || binNames.length == 0)
+                client.get(policy, listener, key);
+            else
+                client.get(policy, listener, key, binNames);
+        } catch (AerospikeException e) {
+            listener.onFailure(e);
+        }
+    }
+
+    // Outcome of a hedged read. Completed by the first success, or by the last failure if all reads failed.
+    private class Call {
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Guarded by this.
+        private int reads = 1;
+        private int failures;
+        private boolean completed;
+        private Record record;
+        private AerospikeException failure;
+
+        boolean await(long nanos) throws InterruptedException {
+            return done.await(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        // Registers a hedge read. Returns false if the call is already complete.
+        synchronized boolean addRead() {
+            if (completed)
+                return false;
+            reads++;
+            return true;
+        }
+
+        synchronized void succeeded(Record record, boolean primary) {
+            if (completed)
+                return;
+            completed = true;
+            this.record = record;
+            if (!primary)
+                hedgesWon.incrementAndGet();
+            done.countDown();
+        }
+
+        synchronized void failed(AerospikeException e) {
+            if (completed)
+                return;
+            if (failure == null)
+                failure = e;
+            if (++failures == reads) {
+                completed = true;
+                done.countDown();
+            }
+        }
+
+        synchronized Record getRecord() {
+            if (failure != null && record == null && failures == reads)
+                throw failure;
+            return record;
+        }
+    }
+
+    // Completes a call. Latency is recorded for primary reads only, including those that lost against a hedge.
+    private class Listener implements RecordListener {
+        private final Call call;
+        private final boolean primary;
+        private final long start = System.nanoTime();
+
+        Listener(Call call, boolean primary) {
+            this.call = call;
+            this.primary = primary;
+        }
+
+        @Override
+        public void onSuccess(Key key, Record record) {
+            if (primary)
+                recordLatency(System.nanoTime() - start);
+            call.succeeded(record, primary);
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            call.failed(e);
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        latencies.record(nanos);
+        if (readsSinceRefresh.incrementAndGet() >= DELAY_REFRESH_READS) {
+            readsSinceRefresh.set(0);
+            long percentile = latencies.percentile(options.getPercentile());
+            delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(options.getMinDelayMillis()),
+                    Math.min(percentile, TimeUnit.MILLISECONDS.toNanos(options.getMaxDelayMillis())));
+        }
+    }
+
+    private long clamp(long millis) {
+        return Math.max(options.getMinDelayMillis(), Math.min(millis, options.getMaxDelayMillis()));
+    }
+
+    // Number of reads.
+    public long getReads() {
+        return reads.get();
+    }
+
+    // Number of hedge reads sent.
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    // Number of hedge reads that answered before the primary read.
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    // Current hedge delay.
+    public long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+}
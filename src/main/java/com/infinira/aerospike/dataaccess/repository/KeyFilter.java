@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.policy.ScanPolicy;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import com.infinira.aerospike.dataaccess.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of the keys of a set. Lookups of keys that are definitely missing are answered without a
+ * database call. The filter is built by a keys-only scan, updated by the writes of the repository and rebuilt
+ * periodically in the background. Deleted keys stay in the filter until the next rebuild, which only costs
+ * database calls. Keys written by other clients are unknown until the next rebuild, so enable the filter only
+ * for sets that are written through this repository or can tolerate that delay.
+ */
+public class KeyFilter<T extends Entity> implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(KeyFilter.class);
+    private final static AerospikeClient aerospikeClient = AerospikeClientUtil.getClient();
+
+    private final AerospikeRepository<T> repository;
+    private final String namespace;
+    private final String setName;
+    private final KeyFilterOptions options;
+    private final ScheduledExecutorService rebuilder;
+
+    private volatile BloomFilter filter;
+    // Filter being built. Writes during a rebuild go to both filters.
+    private volatile BloomFilter building;
+    // Makes adding a key and replacing the filter mutually exclusive, so that no added key is lost by a rebuild.
+    private final Object swapLock = new Object();
+
+    // Statistics
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong negatives = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private volatile long keyCount;
+
+    KeyFilter(AerospikeRepository<T> repository, String namespace, String setName, KeyFilterOptions options) {
+        Assert.notNull(options, "Key filter options cannot be null");
+        Assert.isTrue(options.getRebuildIntervalMillis() > 0, "Rebuild interval must be greater than 0");
+        this.repository = repository;
+        this.namespace = namespace;
+        this.setName = setName;
+        this.options = options;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(AerospikeClientUtil.newDaemonThreadFactory("aerospike-key-filter-"));
+        rebuild();
+        this.rebuilder.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.warn("Key filter rebuild of " + namespace + "/" + setName + " failed: " + e.getMessage());
+                }
+            }
+        }, options.getRebuildIntervalMillis(), options.getRebuildIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds a new filter with a keys-only scan and replaces the current one.
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        long expected = Math.max(options.getExpectedKeys(), repository.getStatistics().refresh().getObjectCount() * 2);
+        final BloomFilter next = new BloomFilter(expected, options.getFalsePositiveRate());
+        final AtomicLong scanned = new AtomicLong();
+        synchronized (swapLock) {
+            building = next;
+        }
+        try {
+            ScanPolicy policy = new ScanPolicy(aerospikeClient.scanPolicyDefault);
+            policy.concurrentNodes = true;
+            policy.includeBinData = false;
+            aerospikeClient.scanAll(policy, namespace, setName, new ScanCallback() {
+                public void scanCallback(Key key, Record record) throws AerospikeException {
+                    next.put(key.digest);
+                    scanned.incrementAndGet();
+                }
+            });
+            synchronized (swapLock) {
+                filter = next;
+                building = null;
+            }
+            keyCount = scanned.get();
+            deletes.set(0);
+            rebuilds.incrementAndGet();
+            logger.info("Key filter of " + namespace + "/" + setName + " built with " + scanned.get() + " keys in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            synchronized (swapLock) {
+                building = null;
+            }
+        }
+    }
+
+    /**
+     * Checks if a key may exist.
+     * @param keyValue key value
+     * @return false if the key definitely does not exist
+     */
+    boolean mightExist(String keyValue) {
+        lookups.incrementAndGet();
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(repository.createKey(keyValue).digest))
+            return true;
+        negatives.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds a key that was written.
+     * @param keyValue key value
+     */
+    void add(String keyValue) {
+        byte[] digest = repository.createKey(keyValue).digest;
+        synchronized (swapLock) {
+            BloomFilter next = building;
+            if (next != null)
+                next.put(digest);
+            BloomFilter current = filter;
+            if (current != null)
+                current.put(digest);
+        }
+    }
+
+    /**
+     * Records a deleted key. Bloom filters cannot remove keys, so the key stays until the next rebuild.
+     */
+    void deleted() {
+        deletes.incrementAndGet();
+    }
+
+    /**
+     * Stops the background rebuilds.
+     */
+    @Override
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    // Number of keys checked.
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    // Number of lookups answered as missing without a database call.
+    public long getNegatives() {
+        return negatives.get();
+    }
+
+    // Number of keys deleted since the last rebuild. They still pass the filter.
+    public long getDeletesSinceRebuild() {
+        return deletes.get();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.get();
+    }
+
+    // Number of keys found by the last rebuild.
+    public long getKeyCount() {
+        return keyCount;
+    }
+
+    // Current false positive rate estimated from the filter fill.
+    public double getFalsePositiveRate() {
+        BloomFilter current = filter;
+        return current != null ? current.getFalsePositiveRate() : 1.0;
+    }
+
+    public long getMemoryBytes() {
+        BloomFilter current = filter;
+        return current != null ? current.getMemoryBytes() : 0;
+    }
+}
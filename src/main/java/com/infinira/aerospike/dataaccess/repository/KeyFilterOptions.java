@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Key filter configuration.
+ */
+public class KeyFilterOptions {
+    // Minimum number of keys the filter is sized for. The filter is sized for twice the set size if that is larger.
+    private long expectedKeys = 100000;
+    // False positive rate at the expected number of keys.
+    private double falsePositiveRate = 0.01;
+    // Time between two rebuilds. Rebuilds drop deleted keys and pick up keys written by other clients.
+    private long rebuildIntervalMillis = 3600000;
+
+    public KeyFilterOptions() {
+    }
+
+    public KeyFilterOptions(long expectedKeys, double falsePositiveRate, long rebuildIntervalMillis) {
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+
+    public long getExpectedKeys() {
+        return expectedKeys;
+    }
+
+    public void setExpectedKeys(long expectedKeys) {
+        this.expectedKeys = expectedKeys;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public long getRebuildIntervalMillis() {
+        return rebuildIntervalMillis;
+    }
+
+    public void setRebuildIntervalMillis(long rebuildIntervalMillis) {
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.Value;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoFactory;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Kryo serialization of bin values that are not native Aerospike types, such as POJOs, sets and lists or maps
+ * holding such objects. Encoded values are stored as a blob that starts with a Kryo marker header (see BinMarker).
+ * Kryo instances are not thread safe and are expensive to create, so they are pooled.
+ * Classes can be registered per entity class, which writes a small id instead of the class name. Registration
+ * ids depend on the registration order, so classes must always be registered in the same order and before the
+ * first repository of the entity class is used. Unregistered classes are still serialized with their class name.
+ * Values written with Java serialization by earlier versions are deserialized by the Aerospike client and
+ * remain readable.
+ */
+public final class KryoCodec {
+    // Codec for entity classes without registrations.
+    private final static KryoCodec DEFAULT = new KryoCodec();
+    // Registered codecs by entity class.
+    private final static ConcurrentMap<Class<?>, KryoCodec> registry = new ConcurrentHashMap<Class<?>, KryoCodec>();
+
+    private final List<Class<?>> registeredClasses;
+    private final KryoPool pool;
+
+    private KryoCodec(Class<?>... registeredClasses) {
+        this.registeredClasses = Collections.unmodifiableList(Arrays.<Class<?>>asList(registeredClasses));
+        this.pool = new KryoPool.Builder(new KryoFactory() {
+            @Override
+            public Kryo create() {
+                return newKryo();
+            }
+        }).softReferences().build();
+    }
+
+    private Kryo newKryo() {
+        Kryo kryo = new Kryo();
+        // Classes without a default constructor are instantiated without calling a constructor.
+        kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        for (Class<?> registeredClass : registeredClasses) {
+            kryo.register(registeredClass);
+        }
+        return kryo;
+    }
+
+    /**
+     * Registers the classes stored in bins of an entity class. Replaces earlier registrations.
+     * @param domainType entity class
+     * @param classes value classes, always in the same order
+     */
+    public static void register(Class<? extends Entity> domainType, Class<?>... classes) {
+        Assert.notNull(domainType, "Domain type cannot be null");
+        registry.put(domainType, new KryoCodec(classes));
+    }
+
+    /**
+     * Gets the codec of an entity class.
+     * @param domainType entity class
+     * @return registered codec or the default codec
+     */
+    public static KryoCodec forClass(Class<?> domainType) {
+        KryoCodec codec = registry.get(domainType);
+        return codec != null ? codec : DEFAULT;
+    }
+
+    public List<Class<?>> getRegisteredClasses() {
+        return registeredClasses;
+    }
+
+    /**
+     * Checks if a value is stored natively by Aerospike: null, strings, integers, doubles, byte arrays and
+     * lists or maps that only hold such values.
+     * @param value bin value
+     * @return true if the value does not need Kryo serialization
+     */
+    static boolean isNative(Object value) {
+        if (value == null || value instanceof String || value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte || value instanceof Double
+                || value instanceof byte[] || value instanceof Value)
+            return true;
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (!isNative(element))
+                    return false;
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isNative(entry.getKey()) || !isNative(entry.getValue()))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Serializes a value.
+     * @param value value
+     * @return encoded blob
+     */
+    byte[] encode(Object value) {
+        Kryo kryo = pool.borrow();
+        try {
+            Output output = new Output(256, -1);
+            output.writeBytes(BinMarker.header(BinMarker.KRYO));
+            kryo.writeClassAndObject(output, value);
+            return output.toBytes();
+        } finally {
+            pool.release(kryo);
+        }
+    }
+
+    /**
+     * Checks if a value read from the database is a Kryo encoded blob.
+     * @param value bin value
+     * @return true if encoded
+     */
+    static boolean isEncoded(Object value) {
+        return BinMarker.is(value, BinMarker.KRYO);
+    }
+
+    /**
+     * Deserializes an encoded blob.
+     * @param encoded encoded blob
+     * @return value
+     */
+    Object decode(byte[] encoded) {
+        Kryo kryo = pool.borrow();
+        try {
+            return kryo.readClassAndObject(new Input(encoded, BinMarker.LENGTH, encoded.length - BinMarker.LENGTH));
+        } finally {
+            pool.release(kryo);
+        }
+    }
+}
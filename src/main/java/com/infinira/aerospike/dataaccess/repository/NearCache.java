@@ -0,0 +1,272 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Record;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side LRU cache of records read by findOne. Bounded by the number of entries and optionally by the
+ * estimated size of the bins. Entries are dropped when the record expires and are invalidated by every write
+ * of the repository. Entries older than the time to live are either read again or, if revalidation is enabled,
+ * kept when a header read shows that the generation did not change.
+ * Every hit returns a new entity built from a private copy of the bins, so callers cannot change cached data.
+ */
+public class NearCache<T extends Entity> {
+    private final static AerospikeClient aerospikeClient = AerospikeClientUtil.getClient();
+
+    private final AerospikeRepository<T> repository;
+    private final EntityBinMapper<T> mapper;
+    private final NearCacheOptions options;
+
+    // Entries in access order. Guarded by this.
+    private final LinkedHashMap<String, CachedRecord> entries = new LinkedHashMap<String, CachedRecord>(16, 0.75f, true);
+    private long bytes;
+    // Incremented by every invalidation. Reads that started before an invalidation are not cached.
+    private final AtomicLong stamp = new AtomicLong();
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static class CachedRecord {
+        final Map<String, Object> bins;
+        final int generation;
+        final int expiration;
+        final long size;
+        // Record expiration time. Long.MAX_VALUE if the record never expires.
+        final long expiresAt;
+        volatile long validatedAt;
+
+        CachedRecord(Map<String, Object> bins, int generation, int expiration, long size, long expiresAt, long validatedAt) {
+            this.bins = bins;
+            this.generation = generation;
+            this.expiration = expiration;
+            this.size = size;
+            this.expiresAt = expiresAt;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    NearCache(AerospikeRepository<T> repository, EntityBinMapper<T> mapper, NearCacheOptions options) {
+        Assert.notNull(options, "Near cache options cannot be null");
+        Assert.isTrue(options.getMaxEntries() > 0, "Max entries must be greater than 0");
+        Assert.isTrue(options.getTimeToLiveMillis() > 0, "Time to live must be greater than 0");
+        this.repository = repository;
+        this.mapper = mapper;
+        this.options = options;
+    }
+
+    /**
+     * Gets a copy of a cached entity.
+     * @param keyValue key value
+     * @return entity or null on a miss
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    T get(String keyValue) throws InstantiationException, IllegalAccessException {
+        long now = System.currentTimeMillis();
+        CachedRecord entry;
+        synchronized (this) {
+            entry = entries.get(keyValue);
+            if (entry != null && entry.expiresAt <= now) {
+                remove(keyValue);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (now - entry.validatedAt >= options.getTimeToLiveMillis() && !revalidate(keyValue, entry, now)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return mapper.toEntity(new Record(EntityBinMapper.copyBins(entry.bins), entry.generation, entry.expiration));
+    }
+
+    // Keeps a stale entry if the record generation did not change. Otherwise drops it.
+    private boolean revalidate(String keyValue, CachedRecord entry, long now) {
+        if (options.isRevalidate()) {
+            long current = stamp.get();
+            Record header = aerospikeClient.getHeader(null, repository.createKey(keyValue));
+            if (header != null && header.generation == entry.generation && stamp.get() == current) {
+                entry.validatedAt = now;
+                revalidations.incrementAndGet();
+                return true;
+            }
+        }
+        synchronized (this) {
+            if (entries.get(keyValue) == entry)
+                remove(keyValue);
+        }
+        return false;
+    }
+
+    /**
+     * Gets the current invalidation stamp. Take it before reading a record that is put in the cache.
+     * @return stamp
+     */
+    long stamp() {
+        return stamp.get();
+    }
+
+    /**
+     * Caches a record read from the database.
+     * @param keyValue key value
+     * @param record record, or null if it does not exist
+     * @param readStamp stamp taken before the record was read
+     */
+    void put(String keyValue, Record record, long readStamp) {
+        if (record == null || record.bins == null)
+            return;
+        long now = System.currentTimeMillis();
+        int timeToLive = record.getTimeToLive();
+        long expiresAt = timeToLive < 0 ? Long.MAX_VALUE : now + timeToLive * 1000L;
+        long size = keyValue.length() * 2 + estimateSize(record.bins);
+        CachedRecord entry = new CachedRecord(EntityBinMapper.copyBins(record.bins), record.generation, record.expiration, size, expiresAt, now);
+        synchronized (this) {
+            // The record may be older than a write that happened during the read.
+            if (stamp.get() != readStamp)
+                return;
+            remove(keyValue);
+            entries.put(keyValue, entry);
+            bytes += size;
+            evict();
+        }
+    }
+
+    /**
+     * Drops a cached record. Called on every local write of the key.
+     * @param keyValue key value
+     */
+    void invalidate(String keyValue) {
+        synchronized (this) {
+            stamp.incrementAndGet();
+            if (remove(keyValue) != null)
+                invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops all cached records.
+     */
+    public void clear() {
+        synchronized (this) {
+            stamp.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private CachedRecord remove(String keyValue) {
+        CachedRecord entry = entries.remove(keyValue);
+        if (entry != null)
+            bytes -= entry.size;
+        return entry;
+    }
+
+    // Removes least recently used entries until the cache is within its bounds.
+    private void evict() {
+        Iterator<Map.Entry<String, CachedRecord>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && (entries.size() > options.getMaxEntries()
+                || (options.getMaxBytes() > 0 && bytes > options.getMaxBytes()))) {
+            bytes -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Rough heap size of bin values.
+    private static long estimateSize(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 40 + ((String) value).length() * 2;
+        if (value instanceof byte[])
+            return 16 + ((byte[]) value).length;
+        long size = 48;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+        } else if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                size += 8 + estimateSize(element);
+            }
+        }
+        return size;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Estimated size of the cached bins.
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // Entries removed to stay within the size bounds.
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    // Entries removed because the record expired.
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    // Stale entries kept after a header read showed no change.
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    // Entries removed by local writes.
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Near cache configuration.
+ */
+public class NearCacheOptions {
+    // Maximum number of cached entities.
+    private int maxEntries = 10000;
+    // Maximum estimated size of the cached bins. 0 means bounded by the number of entries only.
+    private long maxBytes = 0;
+    // Time an entity is served from the cache without checking the database.
+    private long timeToLiveMillis = 5000;
+    // If true, an entity older than the time to live is revalidated with a header read instead of being read again.
+    private boolean revalidate = false;
+
+    public NearCacheOptions() {
+    }
+
+    public NearCacheOptions(int maxEntries, long timeToLiveMillis, boolean revalidate) {
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.revalidate = revalidate;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public boolean isRevalidate() {
+        return revalidate;
+    }
+
+    public void setRevalidate(boolean revalidate) {
+        this.revalidate = revalidate;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Info;
+import com.aerospike.client.Key;
+import com.aerospike.client.cluster.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Client side view of the partition ownership of a namespace. The map is built from the "replicas-master"
+ * info command of every node and refreshed periodically. It is used to group work by the node that owns a key.
+ */
+class PartitionMap {
+    private final static Logger logger = LoggerFactory.getLogger(PartitionMap.class);
+    // Number of partitions in an Aerospike namespace.
+    final static int PARTITIONS = 4096;
+    // How long a loaded map is considered current.
+    private final static long REFRESH_INTERVAL_MILLIS = 5000;
+
+    // Partition maps by namespace
+    private final static ConcurrentMap<String, PartitionMap> partitionMaps = new ConcurrentHashMap<String, PartitionMap>();
+
+    private final AerospikeClient client;
+    private final String namespace;
+    // Master node by partition id
+    private volatile Node[] masters;
+    private volatile long loadedAt;
+
+    private PartitionMap(AerospikeClient client, String namespace) {
+        this.client = client;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Gets the shared partition map of a namespace.
+     * @param namespace name space
+     * @return partition map
+     */
+    static PartitionMap forNamespace(String namespace) {
+        PartitionMap partitionMap = partitionMaps.get(namespace);
+        if (partitionMap == null) {
+            partitionMap = new PartitionMap(AerospikeClientUtil.getClient(), namespace);
+            PartitionMap existing = partitionMaps.putIfAbsent(namespace, partitionMap);
+            if (existing != null)
+                partitionMap = existing;
+        }
+        return partitionMap;
+    }
+
+    /**
+     * Computes the partition id of a key from its digest.
+     * @param digest key digest
+     * @return partition id
+     */
+    static int partitionId(byte[] digest) {
+        // First two digest bytes in little endian order.
+        return ((digest[0] & 0xFF) | ((digest[1] & 0xFF) << 8)) % PARTITIONS;
+    }
+
+    /**
+     * Gets the master node of a key.
+     * @param key key
+     * @return master node or null if the partition map is not available.
+     */
+    Node getMasterNode(Key key) {
+        Node[] current = getMasters();
+        return current == null ? null : current[partitionId(key.digest)];
+    }
+
+    // Loads the partition map if it is missing or stale.
+    private Node[] getMasters() {
+        if (masters == null || System.currentTimeMillis() - loadedAt > REFRESH_INTERVAL_MILLIS) {
+            synchronized (this) {
+                if (masters == null || System.currentTimeMillis() - loadedAt > REFRESH_INTERVAL_MILLIS) {
+                    masters = load("replicas-master");
+                    loadedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return masters;
+    }
+
+    /**
+     * Builds partition ownership from a replicas info command. The response of each node has the format
+     * "ns1:base64-bitmap;ns2:base64-bitmap" where bit n of the bitmap is set if the node owns partition n.
+     * @param command info command name
+     * @return node by partition id or null when the information is not available.
+     */
+    Node[] load(String command) {
+        Node[] owners = new Node[PARTITIONS];
+        boolean found = false;
+        try {
+            for (Node node : client.getNodes()) {
+                String response = Info.request(node, command);
+                if (response == null)
+                    continue;
+                for (String entry : response.split(";")) {
+                    int index = entry.indexOf(':');
+                    if (index <= 0 || !entry.substring(0, index).equals(namespace))
+                        continue;
+                    byte[] bitmap = Base64.getDecoder().decode(entry.substring(index + 1).trim());
+                    for (int partition = 0; partition < PARTITIONS && (partition >> 3) < bitmap.length; partition++) {
+                        if ((bitmap[partition >> 3] & (0x80 >> (partition & 7))) != 0) {
+                            owners[partition] = node;
+                            found = true;
+                        }
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            logger.warn("Unable to load partition map for namespace " + namespace + ": " + ex.getMessage());
+            return null;
+        }
+        return found ? owners : null;
+    }
+}
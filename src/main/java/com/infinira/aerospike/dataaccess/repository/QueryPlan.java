@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.query.Filter;
+import com.aerospike.helper.query.Qualifier;
+
+/**
+ * Execution plan of a query: the secondary index filter chosen by the query planner, or none for a scan,
+ * and the qualifiers that are still applied by the server side Lua filter.
+ */
+public class QueryPlan {
+    private final String namespace;
+    private final String setName;
+    // Null for a scan.
+    private final Filter filter;
+    private final String indexName;
+    private final String predicate;
+    private final long estimatedRecords;
+    private final Qualifier[] qualifiers;
+
+    QueryPlan(String namespace, String setName, Filter filter, String indexName, String predicate,
+              long estimatedRecords, Qualifier[] qualifiers) {
+        this.namespace = namespace;
+        this.setName = setName;
+        this.filter = filter;
+        this.indexName = indexName;
+        this.predicate = predicate;
+        this.estimatedRecords = estimatedRecords;
+        this.qualifiers = qualifiers;
+    }
+
+    // True if no index is used and the whole set is scanned.
+    public boolean isScan() {
+        return filter == null;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    // Name of the index used, or null for a scan.
+    public String getIndexName() {
+        return indexName;
+    }
+
+    // Indexed predicate, for example "age BETWEEN 18 AND 30", or null for a scan.
+    public String getPredicate() {
+        return predicate;
+    }
+
+    // Estimated number of records read from the index. -1 for a scan.
+    public long getEstimatedRecords() {
+        return estimatedRecords;
+    }
+
+    // Qualifiers applied by the Lua filter after the index lookup or scan.
+    public Qualifier[] getQualifiers() {
+        return qualifiers;
+    }
+
+    /**
+     * Describes the plan in one line.
+     * @return plan description
+     */
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        if (isScan()) {
+            sb.append("SCAN ").append(namespace).append('.').append(setName);
+        } else {
+            sb.append("INDEX ").append(indexName).append(" (").append(predicate).append(')');
+            if (estimatedRecords >= 0)
+                sb.append(" estimated ").append(estimatedRecords).append(" records");
+        }
+        int count = qualifiers != null ? qualifiers.length : 0;
+        if (count > 0) {
+            sb.append(", filter ");
+            for (int i = 0; i < count; i++) {
+                if (i > 0)
+                    sb.append(" AND ");
+                sb.append(qualifiers[i].getField()).append(' ').append(qualifiers[i].getOperation());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Info;
+import com.aerospike.client.Value;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.query.Filter;
+import com.aerospike.client.query.IndexType;
+import com.aerospike.helper.query.Qualifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Chooses the secondary index filter of a query from its qualifiers. Index metadata and statistics of a set are
+ * cached and reloaded with info requests when they are older than the refresh interval, or after an index was
+ * created or dropped through a repository. Among the qualifiers that an index can serve, the one with the
+ * fewest estimated records becomes the filter; the others stay qualifiers. Queries without such a qualifier
+ * scan the set.
+ */
+public class QueryPlanner {
+    private final static Logger logger = LoggerFactory.getLogger(QueryPlanner.class);
+    // Default maximum age of the cached index metadata.
+    public final static long DEFAULT_REFRESH_INTERVAL_MILLIS = 60000;
+    // Estimated share of index entries matched by a range, as indexes have no value distribution statistics.
+    private final static double RANGE_SELECTIVITY = 0.25;
+
+    // Planners by namespace and set
+    private final static ConcurrentMap<String, QueryPlanner> planners = new ConcurrentHashMap<String, QueryPlanner>();
+
+    private final AerospikeClient client;
+    private final String namespace;
+    private final String setName;
+    private volatile long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+    // Ready indexes by bin name, and the time they were loaded. Replaced as a whole.
+    private volatile Map<String, SecondaryIndex> indexes;
+    private volatile long loadedAt;
+
+    private QueryPlanner(AerospikeClient client, String namespace, String setName) {
+        this.client = client;
+        this.namespace = namespace;
+        this.setName = setName;
+    }
+
+    /**
+     * Gets the shared planner of a set.
+     * @param namespace name space
+     * @param setName set name
+     * @return query planner
+     */
+    public static QueryPlanner forSet(String namespace, String setName) {
+        String name = namespace + "/" + setName;
+        QueryPlanner planner = planners.get(name);
+        if (planner == null) {
+            planner = new QueryPlanner(AerospikeClientUtil.getClient(), namespace, setName);
+            QueryPlanner existing = planners.putIfAbsent(name, planner);
+            if (existing != null)
+                return existing;
+        }
+        return planner;
+    }
+
+    /**
+     * Secondary index of a bin with statistics summed over all nodes.
+     */
+    public static class SecondaryIndex {
+        private final String name;
+        private final String binName;
+        private final IndexType type;
+        private final long entries;
+        private final long keys;
+
+        SecondaryIndex(String name, String binName, IndexType type, long entries, long keys) {
+            this.name = name;
+            this.binName = binName;
+            this.type = type;
+            this.entries = entries;
+            this.keys = keys;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getBinName() {
+            return binName;
+        }
+
+        public IndexType getType() {
+            return type;
+        }
+
+        // Number of indexed records, including replicas if the server indexes them.
+        public long getEntries() {
+            return entries;
+        }
+
+        // Largest number of distinct values on a node.
+        public long getKeys() {
+            return keys;
+        }
+
+        // Estimated number of records with the same value.
+        public long getEstimatedRecordsPerValue() {
+            return keys > 0 ? (entries + keys - 1) / keys : entries;
+        }
+    }
+
+    /**
+     * Plans a query. Qualifiers must use bin names.
+     * @param qualifiers qualifiers of the query
+     * @return plan with the chosen filter and the remaining qualifiers
+     */
+    public QueryPlan plan(Qualifier... qualifiers) {
+        if (qualifiers == null)
+            qualifiers = new Qualifier[0];
+        Map<String, SecondaryIndex> available = getIndexes();
+        int best = -1;
+        long bestEstimate = Long.MAX_VALUE;
+        Filter bestFilter = null;
+        for (int i = 0; i < qualifiers.length; i++) {
+            Qualifier qualifier = qualifiers[i];
+            if (qualifier == null)
+                continue;
+            SecondaryIndex index = available.get(qualifier.getField());
+            if (index == null)
+                continue;
+            Filter filter = toFilter(qualifier, index.getType());
+            if (filter == null)
+                continue;
+            long estimate = qualifier.getOperation() == Qualifier.FilterOperation.EQ
+                    ? index.getEstimatedRecordsPerValue()
+                    : (long) Math.ceil(index.getEntries() * RANGE_SELECTIVITY);
+            if (estimate < bestEstimate) {
+                best = i;
+                bestEstimate = estimate;
+                bestFilter = filter;
+            }
+        }
+        if (best < 0)
+            return new QueryPlan(namespace, setName, null, null, null, -1, qualifiers);
+        Qualifier chosen = qualifiers[best];
+        Qualifier[] remaining = new Qualifier[qualifiers.length - 1];
+        for (int i = 0, j = 0; i < qualifiers.length; i++) {
+            if (i != best)
+                remaining[j++] = qualifiers[i];
+        }
+        return new QueryPlan(namespace, setName, bestFilter, available.get(chosen.getField()).getName(),
+                describe(chosen), bestEstimate, remaining);
+    }
+
+    /**
+     * Gets the ready indexes of the set. Reloads them if they are older than the refresh interval.
+     * @return indexes by bin name
+     */
+    public Map<String, SecondaryIndex> getIndexes() {
+        Map<String, SecondaryIndex> current = indexes;
+        if (current == null || System.currentTimeMillis() - loadedAt > refreshIntervalMillis) {
+            synchronized (this) {
+                current = indexes;
+                if (current == null || System.currentTimeMillis() - loadedAt > refreshIntervalMillis)
+                    current = refresh();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads index metadata and statistics from the cluster. Keeps the cached indexes if the cluster
+     * cannot be reached.
+     * @return indexes by bin name
+     */
+    public synchronized Map<String, SecondaryIndex> refresh() {
+        try {
+            indexes = Collections.unmodifiableMap(load());
+        } catch (Exception e) {
+            logger.warn("Unable to load secondary indexes of " + namespace + "/" + setName + ": " + e.getMessage());
+            if (indexes == null)
+                indexes = Collections.emptyMap();
+        }
+        loadedAt = System.currentTimeMillis();
+        return indexes;
+    }
+
+    /**
+     * Drops the cached indexes, so that the next query reloads them. Called after indexes change.
+     */
+    public synchronized void invalidate() {
+        indexes = null;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    // Index list entries have the format "ns=test:set=demo:indexname=idx:num_bins=1:bins=age:type=NUMERIC:
+    // sync_state=synced:state=RW", separated by ";". Newer servers report bin and indextype instead.
+    private Map<String, SecondaryIndex> load() {
+        Map<String, SecondaryIndex> result = new HashMap<String, SecondaryIndex>();
+        Node[] nodes = client.getNodes();
+        if (nodes.length == 0)
+            return result;
+        String response = Info.request(nodes[0], "sindex/" + namespace);
+        if (response == null)
+            return result;
+        for (String entry : response.split(";")) {
+            Map<String, String> fields = SetStatistics.parse(entry);
+            String indexName = fields.get("indexname");
+            String set = fields.get("set");
+            String binName = fields.containsKey("bin") ? fields.get("bin") : fields.get("bins");
+            IndexType type = toIndexType(fields.get("type"));
+            if (indexName == null || binName == null || type == null || binName.contains(","))
+                continue;
+            // Indexes without a set cover all sets of the namespace.
+            if (set != null && !set.equals("NULL") && !set.equals(setName))
+                continue;
+            if (fields.containsKey("state") && !"RW".equals(fields.get("state")))
+                continue;
+            long entries = 0;
+            long keys = 0;
+            for (Node node : nodes) {
+                Map<String, String> stats = SetStatistics.parse(Info.request(node, "sindex/" + namespace + "/" + indexName));
+                entries += getLong(stats, "entries");
+                keys = Math.max(keys, getLong(stats, "keys"));
+            }
+            result.put(binName, new SecondaryIndex(indexName, binName, type, entries, keys));
+        }
+        return result;
+    }
+
+    private static IndexType toIndexType(String type) {
+        if (type == null)
+            return null;
+        type = type.toUpperCase();
+        if (type.contains("NUMERIC") || type.startsWith("INT"))
+            return IndexType.NUMERIC;
+        if (type.contains("STRING") || type.contains("TEXT"))
+            return IndexType.STRING;
+        return null;
+    }
+
+    // Converts a qualifier to an index filter, or returns null if the index cannot serve it.
+    private static Filter toFilter(Qualifier qualifier, IndexType type) {
+        Object value1 = toObject(qualifier.getValue1());
+        Object value2 = toObject(qualifier.getValue2());
+        String binName = qualifier.getField();
+        switch (qualifier.getOperation()) {
+            case EQ:
+                if (type == IndexType.STRING && value1 instanceof String)
+                    return Filter.equal(binName, (String) value1);
+                if (type == IndexType.NUMERIC && isInteger(value1))
+                    return Filter.equal(binName, ((Number) value1).longValue());
+                return null;
+            case GT:
+                if (type == IndexType.NUMERIC && isInteger(value1) && ((Number) value1).longValue() < Long.MAX_VALUE)
+                    return Filter.range(binName, ((Number) value1).longValue() + 1, Long.MAX_VALUE);
+                return null;
+            case GTEQ:
+                if (type == IndexType.NUMERIC && isInteger(value1))
+                    return Filter.range(binName, ((Number) value1).longValue(), Long.MAX_VALUE);
+                return null;
+            case LT:
+                if (type == IndexType.NUMERIC && isInteger(value1) && ((Number) value1).longValue() > Long.MIN_VALUE)
+                    return Filter.range(binName, Long.MIN_VALUE, ((Number) value1).longValue() - 1);
+                return null;
+            case LTEQ:
+                if (type == IndexType.NUMERIC && isInteger(value1))
+                    return Filter.range(binName, Long.MIN_VALUE, ((Number) value1).longValue());
+                return null;
+            case BETWEEN:
+                if (type == IndexType.NUMERIC && isInteger(value1) && isInteger(value2))
+                    return Filter.range(binName, ((Number) value1).longValue(), ((Number) value2).longValue());
+                return null;
+            default:
+                // NOTEQ, START_WITH and ENDS_WITH cannot use an index.
+                return null;
+        }
+    }
+
+    private static String describe(Qualifier qualifier) {
+        StringBuilder sb = new StringBuilder(qualifier.getField()).append(' ').append(qualifier.getOperation())
+                .append(' ').append(toObject(qualifier.getValue1()));
+        if (qualifier.getOperation() == Qualifier.FilterOperation.BETWEEN)
+            sb.append(" AND ").append(toObject(qualifier.getValue2()));
+        return sb.toString();
+    }
+
+    private static Object toObject(Value value) {
+        return value != null ? value.getObject() : null;
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static long getLong(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null)
+            return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Record metadata read without bin data.
+ */
+public class RecordHeader {
+    private final String keyValue;
+    private final int generation;
+    private final int expiration;
+    private final int timeToLive;
+
+    RecordHeader(String keyValue, int generation, int expiration, int timeToLive) {
+        this.keyValue = keyValue;
+        this.generation = generation;
+        this.expiration = expiration;
+        this.timeToLive = timeToLive;
+    }
+
+    public String getKeyValue() {
+        return keyValue;
+    }
+
+    // Number of times the record was written.
+    public int getGeneration() {
+        return generation;
+    }
+
+    // Expiration in seconds since the Aerospike epoch (2010-01-01). 0 if the record never expires.
+    public int getExpiration() {
+        return expiration;
+    }
+
+    // Seconds until the record expires. -1 if the record never expires.
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    @Override
+    public String toString() {
+        return keyValue + " [generation=" + generation + ", ttl=" + timeToLive + "]";
+    }
+}
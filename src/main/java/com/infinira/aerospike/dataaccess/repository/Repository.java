@@ -24,6 +24,7 @@ import com.infinira.aerospike.dataaccess.model.Entity;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -51,6 +52,12 @@ public interface Repository<T extends Entity> {
     //InsertAll events in the list
     void insertAll(Collection<T> objectsToSave);
 
+    //Save (create or update) all events in the list
+    void saveAll(Collection<T> objectsToSave);
+
+    //Update all events in the list
+    void updateAll(Collection<T> objectsToUpdate);
+
     // Find a field value
     Object get(String keyValue, String fieldName);
 
@@ -60,9 +67,18 @@ public interface Repository<T extends Entity> {
     // Find an event for a given keyValue
     T findOne(String keyValue) throws InstantiationException, IllegalAccessException;
 
+    // Find a partial entity with only the given fields
+    T findOne(String keyValue, String... fieldNames) throws InstantiationException, IllegalAccessException;
+
     // Check if record exists
     boolean exists(String keyValue);
 
+    // Check which records exist with one batch call
+    boolean[] exists(String[] keyValues);
+
+    // Get generation and expiration of records with one batch call
+    RecordHeader[] headers(String[] keyValues);
+
     ArrayList<T> findAll();
 
     ArrayList<T> findAll(Filter filter, Qualifier... qualifiers);
@@ -70,9 +86,18 @@ public interface Repository<T extends Entity> {
     // Find all event for a given array of event ids.
     ArrayList<T> findAll(String[] keyValues) throws InstantiationException, IllegalAccessException;
 
+    // Find partial entities with only the given fields for a given array of ids.
+    ArrayList<T> findAll(String[] keyValues, String... fieldNames) throws InstantiationException, IllegalAccessException;
+
+    // Find partial entities with only the given fields that match a filter and qualifiers.
+    ArrayList<T> findAllProjected(Filter filter, String[] fieldNames, Qualifier... qualifiers);
+
     // Get count of all CPEvents in the database. Taken from example code.
     long count();
 
+    // Aggregate on the server with stream UDFs.
+    <R> R aggregate(Filter filter, Aggregation<R> aggregation);
+
     // Prepend value to an existing field's value.
     T prepend(T object, String fieldName, String value) throws IllegalAccessException, InstantiationException;
 
@@ -93,6 +118,28 @@ public interface Repository<T extends Entity> {
     // This call only works for integer values. Object in the map must be Integer object.
     T add(T object, Map<String, Object> values) throws IllegalAccessException, InstantiationException;
 
+    // List bin operations. The whole list is not read or written.
+    long listAppend(String keyValue, String fieldName, Object value);
+
+    long listAppendItems(String keyValue, String fieldName, List<?> values);
+
+    Object listGet(String keyValue, String fieldName, int index);
+
+    Object listRemove(String keyValue, String fieldName, int index);
+
+    long listSize(String keyValue, String fieldName);
+
+    // Map bin operations. The whole map is not read or written.
+    long mapPut(String keyValue, String fieldName, Object mapKey, Object value);
+
+    long mapPutItems(String keyValue, String fieldName, Map<?, ?> items);
+
+    Object mapGetByKey(String keyValue, String fieldName, Object mapKey);
+
+    Object mapRemoveByKey(String keyValue, String fieldName, Object mapKey);
+
+    long mapSize(String keyValue, String fieldName);
+
     void delete(String keyValue);
 
     void delete(String[] keyValues);
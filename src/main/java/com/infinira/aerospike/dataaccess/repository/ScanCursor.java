@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a paginated scan: the node being scanned, the number of records of that node already scanned,
+ * and the digest of the last returned record. Encoded as an opaque URL safe string.
+ */
+final class ScanCursor {
+    private final static byte VERSION = 1;
+    private final static int DIGEST_LENGTH = 20;
+
+    private final String nodeName;
+    private final long offset;
+    private final byte[] digest;
+
+    ScanCursor(String nodeName, long offset, byte[] digest) {
+        this.nodeName = nodeName;
+        this.offset = offset;
+        this.digest = digest;
+    }
+
+    String getNodeName() {
+        return nodeName;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    byte[] getDigest() {
+        return digest;
+    }
+
+    String encode() {
+        byte[] name = nodeName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + name.length + 8 + DIGEST_LENGTH);
+        buffer.put(VERSION);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.putLong(offset);
+        buffer.put(digest);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    static ScanCursor decode(String cursor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+            if (buffer.get() != VERSION)
+                throw new IllegalArgumentException("Unsupported scan cursor version");
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            long offset = buffer.getLong();
+            byte[] digest = new byte[DIGEST_LENGTH];
+            buffer.get(digest);
+            return new ScanCursor(new String(name, StandardCharsets.UTF_8), offset, digest);
+        } catch (RuntimeException e) {
+            // Malformed Base64, truncated data or unsupported version.
+            throw new IllegalArgumentException("Invalid scan cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Parallel scan configuration.
+ */
+public class ScanOptions {
+    // Maximum number of nodes scanned at the same time. 0 means all nodes.
+    private int maxConcurrentNodes = 0;
+    // Fields to read. All fields are read if null or empty; otherwise the consumer gets partial entities.
+    private String[] fieldNames;
+    // Throughput cap in records per second over all nodes. 0 means unlimited.
+    private long maxRecordsPerSecond = 0;
+    // Percentage of records to scan.
+    private int scanPercent = 100;
+    // Rebind one entity instance per scan thread to every record instead of creating an entity per record.
+    // The entity is valid only until the consumer returns; consumers keep copies with detach().
+    private boolean reuseEntities = false;
+
+    public ScanOptions() {
+    }
+
+    public ScanOptions(long maxRecordsPerSecond, String... fieldNames) {
+        this.maxRecordsPerSecond = maxRecordsPerSecond;
+        this.fieldNames = fieldNames;
+    }
+
+    public int getMaxConcurrentNodes() {
+        return maxConcurrentNodes;
+    }
+
+    public void setMaxConcurrentNodes(int maxConcurrentNodes) {
+        this.maxConcurrentNodes = maxConcurrentNodes;
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    public void setFieldNames(String... fieldNames) {
+        this.fieldNames = fieldNames;
+    }
+
+    public long getMaxRecordsPerSecond() {
+        return maxRecordsPerSecond;
+    }
+
+    public void setMaxRecordsPerSecond(long maxRecordsPerSecond) {
+        this.maxRecordsPerSecond = maxRecordsPerSecond;
+    }
+
+    public int getScanPercent() {
+        return scanPercent;
+    }
+
+    public void setScanPercent(int scanPercent) {
+        this.scanPercent = scanPercent;
+    }
+
+    public boolean isReuseEntities() {
+        return reuseEntities;
+    }
+
+    public void setReuseEntities(boolean reuseEntities) {
+        this.reuseEntities = reuseEntities;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.Entity;
+
+import java.util.List;
+
+/**
+ * One page of a paginated scan. Each page re-reads the keys of its node up to the previous page, so the total
+ * cost of paging through a node grows with the square of its size (see AerospikeRepository.scanPage).
+ */
+public class ScanPage<T extends Entity> {
+    private final List<T> entities;
+    private final String cursor;
+
+    ScanPage(List<T> entities, String cursor) {
+        this.entities = entities;
+        this.cursor = cursor;
+    }
+
+    public List<T> getEntities() {
+        return entities;
+    }
+
+    // Opaque cursor of the next page, or null after the last page. Can be stored to resume the scan later.
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean isLast() {
+        return cursor == null;
+    }
+}
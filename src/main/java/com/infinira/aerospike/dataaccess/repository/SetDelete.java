@@ -27,6 +27,8 @@ import com.aerospike.client.policy.ScanPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * This class has been taken from Aerospike utility code: https://github.com/aerospike/delete-set and licensed under
  * Apache License, Version 2.0.
@@ -34,13 +36,15 @@ import org.slf4j.LoggerFactory;
 
 public class SetDelete {
     private static Logger log = LoggerFactory.getLogger(SetDelete.class);
-    static int count = 0;
     public static void clearSet(String namespace, String set) throws Exception {
 
         try {
             final AerospikeClient client = AerospikeClientUtil.getClient();
+            final AtomicLong count = new AtomicLong();
             ScanPolicy scanPolicy = new ScanPolicy();
             scanPolicy.includeBinData = false;
+            // Scan the nodes in parallel.
+            scanPolicy.concurrentNodes = true;
 			/*
 			 * scan the entire Set using scannAll(). This will scan each node
 			 * in the cluster and return the record Digest to the call back object
@@ -52,13 +56,12 @@ public class SetDelete {
 					/*
 					 * for each Digest returned, delete it using delete()
 					 */
-                    if (client.delete(null, key))
-                        count++;
-					/*
-					 * after 25,000 records delete, return print the count.
-					 */
-                    if (count % 25000 == 0){
-                        log.info("Deleted "+ count + " records");
+                    if (client.delete(null, key)) {
+                        // after 25,000 records delete, print the count.
+                        long deleted = count.incrementAndGet();
+                        if (deleted % 25000 == 0) {
+                            log.info("Deleted " + deleted + " records");
+                        }
                     }
                 }
             });
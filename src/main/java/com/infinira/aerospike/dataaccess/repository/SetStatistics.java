@@ -0,0 +1,331 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Info;
+import com.aerospike.client.cluster.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached statistics of a set. Object counts, tombstones and memory and disk usage are gathered from every node
+ * with one info request per node, and refreshed by a background thread while they are read. Statistics that
+ * were not read for the idle timeout are dropped and no longer refreshed. Reads never go to the cluster, except
+ * the first one after the statistics were dropped. Master object counts are derived from the namespace
+ * replication factor.
+ */
+public class SetStatistics {
+    private final static Logger logger = LoggerFactory.getLogger(SetStatistics.class);
+    // Default time between two refreshes.
+    public final static long DEFAULT_REFRESH_INTERVAL_MILLIS = 1000;
+    // Default time without reads after which the background refresh stops.
+    public final static long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+
+    // Statistics by namespace and set
+    private final static ConcurrentMap<String, SetStatistics> statistics = new ConcurrentHashMap<String, SetStatistics>();
+    // Refreshes all statistics.
+    private final static ScheduledExecutorService refresher =
+            Executors.newSingleThreadScheduledExecutor(AerospikeClientUtil.newDaemonThreadFactory("aerospike-set-stats-"));
+
+    private final AerospikeClient client;
+    private final String namespace;
+    private final String setName;
+    private volatile long refreshIntervalMillis = DEFAULT_REFRESH_INTERVAL_MILLIS;
+    private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private volatile Snapshot snapshot;
+    private volatile long lastReadMillis;
+    // True while the background refresh is scheduled. Changed while holding this.
+    private volatile boolean refreshing;
+
+    private SetStatistics(AerospikeClient client, String namespace, String setName) {
+        this.client = client;
+        this.namespace = namespace;
+        this.setName = setName;
+    }
+
+    /**
+     * Gets the shared statistics of a set. The background refresh starts with the first read.
+     * @param namespace name space
+     * @param setName set name
+     * @return set statistics
+     */
+    public static SetStatistics forSet(String namespace, String setName) {
+        String name = namespace + "/" + setName;
+        SetStatistics setStatistics = statistics.get(name);
+        if (setStatistics == null) {
+            setStatistics = new SetStatistics(AerospikeClientUtil.getClient(), namespace, setName);
+            SetStatistics existing = statistics.putIfAbsent(name, setStatistics);
+            if (existing != null)
+                return existing;
+        }
+        return setStatistics;
+    }
+
+    /**
+     * Statistics of a set on one node. Counts include replica objects.
+     */
+    public static class NodeStatistics {
+        private final long objects;
+        private final long tombstones;
+        private final long memoryBytes;
+        private final long diskBytes;
+
+        NodeStatistics(long objects, long tombstones, long memoryBytes, long diskBytes) {
+            this.objects = objects;
+            this.tombstones = tombstones;
+            this.memoryBytes = memoryBytes;
+            this.diskBytes = diskBytes;
+        }
+
+        public long getObjects() {
+            return objects;
+        }
+
+        public long getTombstones() {
+            return tombstones;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+    }
+
+    /**
+     * Statistics of a set at a point in time.
+     */
+    public static class Snapshot {
+        private final Map<String, NodeStatistics> nodes;
+        private final int replicationFactor;
+        private final long loadedAt;
+        private long objects;
+        private long tombstones;
+        private long memoryBytes;
+        private long diskBytes;
+
+        Snapshot(Map<String, NodeStatistics> nodes, int replicationFactor, long loadedAt) {
+            this.nodes = Collections.unmodifiableMap(nodes);
+            this.replicationFactor = replicationFactor;
+            this.loadedAt = loadedAt;
+            for (NodeStatistics node : nodes.values()) {
+                objects += node.getObjects();
+                tombstones += node.getTombstones();
+                memoryBytes += node.getMemoryBytes();
+                diskBytes += node.getDiskBytes();
+            }
+        }
+
+        // Number of records without replicas.
+        public long getObjectCount() {
+            return objects / copies();
+        }
+
+        // Number of records including replicas.
+        public long getTotalObjectCount() {
+            return objects;
+        }
+
+        // Number of deleted records that still have tombstones, without replicas.
+        public long getTombstoneCount() {
+            return tombstones / copies();
+        }
+
+        // Memory used by the set on all nodes, including replicas.
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+
+        // Disk space used by the set on all nodes, including replicas. 0 if the server does not report it.
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        public int getReplicationFactor() {
+            return replicationFactor;
+        }
+
+        // Statistics by node name.
+        public Map<String, NodeStatistics> getNodes() {
+            return nodes;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        // Number of copies of every record. Cannot be more than the number of nodes.
+        private int copies() {
+            return Math.max(1, Math.min(replicationFactor, nodes.size()));
+        }
+    }
+
+    /**
+     * Gets the latest statistics. Loads them on the calling thread if they were never loaded or were dropped
+     * after the idle timeout, and starts the background refresh.
+     * @return statistics
+     */
+    public Snapshot getSnapshot() {
+        lastReadMillis = System.currentTimeMillis();
+        Snapshot current = snapshot;
+        if (current == null || !refreshing) {
+            synchronized (this) {
+                if (snapshot == null)
+                    snapshot = load();
+                current = snapshot;
+                if (!refreshing) {
+                    refreshing = true;
+                    scheduleRefresh();
+                }
+            }
+        }
+        return current;
+    }
+
+    // Number of records in the set, without replicas.
+    public long getObjectCount() {
+        return getSnapshot().getObjectCount();
+    }
+
+    /**
+     * Loads the statistics now, for example right after a bulk load.
+     * @return fresh statistics
+     */
+    public Snapshot refresh() {
+        Snapshot current = load();
+        snapshot = current;
+        return current;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    /**
+     * Sets the time between two background refreshes. Takes effect after the next refresh.
+     * @param refreshIntervalMillis interval in milliseconds
+     */
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        if (refreshIntervalMillis <= 0)
+            throw new IllegalArgumentException("Refresh interval must be greater than 0");
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Sets the time without reads after which the statistics are dropped and the background refresh stops.
+     * @param idleTimeoutMillis idle timeout in milliseconds
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        if (idleTimeoutMillis <= 0)
+            throw new IllegalArgumentException("Idle timeout must be greater than 0");
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    private void scheduleRefresh() {
+        refresher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SetStatistics.this) {
+                    if (System.currentTimeMillis() - lastReadMillis >= idleTimeoutMillis) {
+                        // Not read recently. The next read loads the statistics again.
+                        snapshot = null;
+                        refreshing = false;
+                        return;
+                    }
+                }
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    logger.warn("Unable to refresh statistics of " + namespace + "/" + setName + ": " + e.getMessage());
+                } finally {
+                    scheduleRefresh();
+                }
+            }
+        }, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Snapshot load() {
+        String setCommand = "sets/" + namespace + "/" + setName;
+        String namespaceCommand = "namespace/" + namespace;
+        Map<String, NodeStatistics> nodes = new LinkedHashMap<String, NodeStatistics>();
+        int replicationFactor = 0;
+        for (Node node : client.getNodes()) {
+            Map<String, String> responses = Info.request(node, setCommand, namespaceCommand);
+            Map<String, String> set = parse(responses.get(setCommand));
+            nodes.put(node.getName(), new NodeStatistics(
+                    getLong(set, "objects", "n_objects"),
+                    getLong(set, "tombstones", "n-tombstones"),
+                    getLong(set, "memory_data_bytes", "n-bytes-memory"),
+                    getLong(set, "device_data_bytes", "n-bytes-device")));
+            if (replicationFactor == 0) {
+                Map<String, String> ns = parse(responses.get(namespaceCommand));
+                replicationFactor = (int) getLong(ns, "effective_replication_factor", "replication-factor", "repl-factor");
+            }
+        }
+        if (replicationFactor == 0) {
+            logger.warn("Replication factor of namespace " + namespace + " is not available. Assuming 2.");
+            replicationFactor = 2;
+        }
+        return new Snapshot(nodes, replicationFactor, System.currentTimeMillis());
+    }
+
+    // Parses an info response of the format "name1=value1:name2=value2;name3=value3".
+    static Map<String, String> parse(String response) {
+        Map<String, String> fields = new HashMap<String, String>();
+        if (response == null)
+            return fields;
+        for (String field : response.split("[:;]")) {
+            int index = field.indexOf('=');
+            if (index > 0)
+                fields.put(field.substring(0, index).trim(), field.substring(index + 1).trim());
+        }
+        return fields;
+    }
+
+    // Gets the first available of several names, as statistics were renamed between server versions.
+    private static long getLong(Map<String, String> fields, String... names) {
+        for (String name : names) {
+            String value = fields.get(name);
+            if (value != null) {
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    logger.debug("Invalid value of " + name + ": " + value);
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Info;
+import com.aerospike.client.Language;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.task.RegisterTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Lua module bundled as a class path resource. The module is registered on the cluster before its first use.
+ * The version of a module is the SHA-1 hash of its source; a module is registered again only if the cluster
+ * does not have it or has a different version, so that upgrading the jar upgrades the module.
+ */
+public final class UdfModule {
+    private final static Logger logger = LoggerFactory.getLogger(UdfModule.class);
+
+    // Built-in aggregations used by Aggregation.
+    public final static UdfModule AGGREGATIONS = new UdfModule("dataaccess_aggregate", UdfModule.class.getClassLoader(),
+            "udf/dataaccess_aggregate.lua");
+
+    private final String packageName;
+    private final ClassLoader classLoader;
+    private final String resourcePath;
+    private volatile String version;
+    private volatile boolean registered;
+
+    /**
+     * Creates a module.
+     * @param packageName Lua package name. The module is stored on the server as packageName.lua.
+     * @param classLoader class loader of the resource
+     * @param resourcePath class path resource of the Lua source
+     */
+    public UdfModule(String packageName, ClassLoader classLoader, String resourcePath) {
+        Assert.hasText(packageName, "Package name cannot be empty");
+        Assert.notNull(classLoader, "Class loader cannot be null");
+        Assert.hasText(resourcePath, "Resource path cannot be empty");
+        this.packageName = packageName;
+        this.classLoader = classLoader;
+        this.resourcePath = resourcePath;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+    /**
+     * Gets the version of the bundled source.
+     * @return SHA-1 hash of the source in hex
+     */
+    public String getVersion() {
+        if (version == null)
+            version = hash(readSource());
+        return version;
+    }
+
+    /**
+     * Registers the module on the cluster unless every node has the bundled version. Waits until the module is
+     * available on all nodes. Registration is checked once per module instance.
+     * @param client client
+     */
+    public void register(AerospikeClient client) {
+        if (registered)
+            return;
+        synchronized (this) {
+            if (registered)
+                return;
+            String serverPath = packageName + ".lua";
+            if (!isRegistered(client, serverPath, getVersion())) {
+                RegisterTask task = client.register(null, classLoader, resourcePath, serverPath, Language.LUA);
+                task.waitTillComplete();
+                logger.info("Registered UDF module " + serverPath + " version " + getVersion());
+            }
+            registered = true;
+        }
+    }
+
+    // Checks the udf-list of every node. The response has the format "filename=f.lua,hash=h,type=LUA;..."
+    private static boolean isRegistered(AerospikeClient client, String serverPath, String version) {
+        Node[] nodes = client.getNodes();
+        if (nodes.length == 0)
+            return false;
+        for (Node node : nodes) {
+            String response = Info.request(node, "udf-list");
+            if (response == null || !response.contains("filename=" + serverPath + ",hash=" + version + ","))
+                return false;
+        }
+        return true;
+    }
+
+    private byte[] readSource() {
+        InputStream in = classLoader.getResourceAsStream(resourcePath);
+        if (in == null)
+            throw new IllegalStateException("UDF module resource not found: " + resourcePath);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read UDF module resource " + resourcePath, e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close UDF module resource: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String hash(byte[] source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
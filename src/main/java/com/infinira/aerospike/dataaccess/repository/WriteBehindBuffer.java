@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.Bin;
+import com.infinira.aerospike.dataaccess.model.Entity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer that coalesces changes of the same key. Save and update calls only record the changed bins;
+ * pending bins of a key are merged (latest value wins) and written with one put per key by a background thread,
+ * either when the flush interval expires or when the number of pending keys reaches the flush threshold.
+ * Memory is bounded by the maximum number of pending keys. Writers wait when the buffer is full.
+ */
+public class WriteBehindBuffer<T extends Entity> implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final AerospikeRepository<T> repository;
+    private final WriteBehindOptions options;
+
+    // Pending writes by key value. Guarded by lock.
+    private LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<String, PendingWrite>();
+    // Writes drained by the flush in progress. They stay visible to isPending until written. Guarded by lock.
+    private Map<String, PendingWrite> inFlight = Collections.emptyMap();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when a flush is required before the interval expires.
+    private final Condition flushRequested = lock.newCondition();
+    // Signalled when pending writes are drained.
+    private final Condition notFull = lock.newCondition();
+    // Serializes flushes so that writes of the same key are never reordered.
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean closed = false;
+    private final Thread flusher;
+
+    // Statistics
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Exception lastFailure;
+
+    // Merged bins of a key.
+    private static class PendingWrite {
+        String opType;
+        final LinkedHashMap<String, Bin> bins = new LinkedHashMap<String, Bin>();
+
+        PendingWrite(String opType) {
+            this.opType = opType;
+        }
+    }
+
+    WriteBehindBuffer(AerospikeRepository<T> repository, WriteBehindOptions options) {
+        Assert.notNull(options, "Write-behind options cannot be null");
+        Assert.isTrue(options.getFlushIntervalMillis() > 0, "Flush interval must be greater than 0");
+        Assert.isTrue(options.getMaxPendingKeys() > 0, "Max pending keys must be greater than 0");
+        this.repository = repository;
+        this.options = options;
+        this.flusher = AerospikeClientUtil.newDaemonThreadFactory("aerospike-write-behind-").newThread(new Runnable() {
+            @Override
+            public void run() {
+                runFlusher();
+            }
+        });
+        this.flusher.start();
+    }
+
+    /**
+     * Adds changed bins of a key to the buffer. Waits if the buffer is full.
+     * @param opType SAVE or UPDATE
+     * @param keyValue key value
+     * @param bins changed bins
+     * @return false if the buffer is closed and the bins must be written directly
+     */
+    boolean enqueue(String opType, String keyValue, Bin[] bins) {
+        Assert.notNull(keyValue, "Key value cannot be null");
+        lock.lock();
+        try {
+            if (closed)
+                return false;
+            PendingWrite write = pending.get(keyValue);
+            // Wait for space only if the key is not already pending. Merging does not add a key.
+            while (write == null && pending.size() >= options.getMaxPendingKeys()) {
+                flushRequested.signal();
+                notFull.await();
+                if (closed)
+                    return false;
+                write = pending.get(keyValue);
+            }
+            if (write == null) {
+                write = new PendingWrite(opType);
+                pending.put(keyValue, write);
+            } else {
+                coalesced.incrementAndGet();
+                // A save creates the record if needed, so it wins over an update.
+                if (opType.equals("SAVE"))
+                    write.opType = opType;
+            }
+            for (Bin bin : bins) {
+                write.bins.put(bin.name, bin);
+            }
+            enqueued.incrementAndGet();
+            if (pending.size() >= options.getFlushThreshold())
+                flushRequested.signal();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for write-behind buffer space", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a key has pending writes, including writes of a flush in progress.
+     * @param keyValue key value
+     * @return true if writes are pending
+     */
+    boolean isPending(String keyValue) {
+        lock.lock();
+        try {
+            return pending.containsKey(keyValue) || inFlight.containsKey(keyValue);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops pending writes of a key. Used before the record is deleted.
+     * @param keyValue key value
+     */
+    void discard(String keyValue) {
+        // Take the flush lock so that a flush in progress cannot write the key after it is deleted.
+        flushLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (pending.remove(keyValue) != null)
+                    notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending changes on the calling thread. Waits for a flush in progress first.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            LinkedHashMap<String, PendingWrite> drained;
+            lock.lock();
+            try {
+                if (pending.isEmpty())
+                    return;
+                drained = pending;
+                inFlight = drained;
+                pending = new LinkedHashMap<String, PendingWrite>();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                for (Map.Entry<String, PendingWrite> entry : drained.entrySet()) {
+                    PendingWrite write = entry.getValue();
+                    try {
+                        repository.write(write.opType, repository.createKey(entry.getKey()),
+                                write.bins.values().toArray(new Bin[write.bins.size()]));
+                        repository.addKey(entry.getKey());
+                        written.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        lastFailure = e;
+                        logger.error("Write-behind failed for key " + entry.getKey() + ": " + e.getMessage());
+                    }
+                }
+            } finally {
+                lock.lock();
+                try {
+                    inFlight = Collections.emptyMap();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            lock.lock();
+            try {
+                if (pending.size() < options.getFlushThreshold())
+                    flushRequested.await(options.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Closing. Remaining writes are flushed by close().
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.error("Write-behind flush failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting changes, writes all pending changes and stops the background thread.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Number of keys waiting to be written.
+    public int getPendingKeys() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of changes accepted.
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    // Number of changes merged into an already pending key.
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    // Number of puts sent to the database.
+    public long getWritten() {
+        return written.get();
+    }
+
+    // Number of puts that failed.
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public Exception getLastFailure() {
+        return lastFailure;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+/**
+ * Write-behind buffer configuration.
+ */
+public class WriteBehindOptions {
+    // Maximum time a change waits in the buffer before it is written.
+    private long flushIntervalMillis = 100;
+    // Number of pending keys that triggers a flush before the interval expires.
+    private int flushThreshold = 5000;
+    // Maximum number of pending keys. Writers wait for the buffer to drain when it is full.
+    private int maxPendingKeys = 10000;
+
+    public WriteBehindOptions() {
+    }
+
+    public WriteBehindOptions(long flushIntervalMillis, int flushThreshold, int maxPendingKeys) {
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushThreshold = flushThreshold;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public void setFlushThreshold(int flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
+    public int getMaxPendingKeys() {
+        return maxPendingKeys;
+    }
+
+    public void setMaxPendingKeys(int maxPendingKeys) {
+        this.maxPendingKeys = maxPendingKeys;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter over hashes of at least 16 bytes, such as Aerospike key digests. The bit positions
+ * are derived from the first 16 bytes by double hashing, so the hash must already be uniformly distributed.
+ * Elements can be added concurrently without locks.
+ */
+public final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+    // Number of set bits, for the false positive rate.
+    private final AtomicLong bitCount = new AtomicLong();
+
+    /**
+     * Creates a filter sized for an expected number of elements and false positive rate.
+     * @param expectedElements expected number of elements
+     * @param falsePositiveRate false positive rate when the filter holds the expected number of elements
+     */
+    public BloomFilter(long expectedElements, double falsePositiveRate) {
+        if (expectedElements <= 0)
+            throw new IllegalArgumentException("Expected elements must be greater than 0");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        long bits = (long) Math.ceil(-expectedElements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedElements * Math.log(2)));
+    }
+
+    /**
+     * Adds a hash to the filter.
+     * @param hash hash of at least 16 bytes
+     */
+    public void put(byte[] hash) {
+        long h1 = toLong(hash, 0);
+        long h2 = toLong(hash, 8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0)
+                    break;
+            } while (!words.compareAndSet(index, word, word | mask));
+            if ((word & mask) == 0)
+                bitCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Checks if a hash may have been added. False means it was definitely not added.
+     * @param hash hash of at least 16 bytes
+     * @return false if the hash was never added
+     */
+    public boolean mightContain(byte[] hash) {
+        long h1 = toLong(hash, 0);
+        long h2 = toLong(hash, 8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the current false positive rate, computed from the fraction of set bits.
+     * @return probability that an element that was never added is reported as present
+     */
+    public double getFalsePositiveRate() {
+        return Math.pow((double) bitCount.get() / bitSize, hashCount);
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getMemoryBytes() {
+        return bitSize / 8;
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.util;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe tracker of the most recent latency samples. Percentiles are computed over a fixed size window,
+ * so old samples age out as new ones are recorded.
+ */
+public final class LatencyTracker {
+    private final long[] samples;
+    // Next slot to write and number of valid samples. Guarded by this.
+    private int next = 0;
+    private int count = 0;
+
+    public LatencyTracker(int windowSize) {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("Window size must be greater than 0");
+        this.samples = new long[windowSize];
+    }
+
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length)
+            count++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets a percentile of the recorded samples.
+     * @param percentile percentile between 0 and 100
+     * @return latency in nanoseconds, or -1 if no samples were recorded.
+     */
+    public long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0)
+                return -1;
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
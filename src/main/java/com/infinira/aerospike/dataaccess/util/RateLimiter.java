@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple thread safe rate limiter. Permits are handed out evenly spaced in time; unused time is not saved up,
+ * so there are no bursts above the configured rate. A rate of 0 or less means unlimited.
+ */
+public final class RateLimiter {
+    // Time between two permits.
+    private final long intervalNanos;
+    // Time at which the next permit becomes available.
+    private long nextPermitAt = System.nanoTime();
+
+    public RateLimiter(long permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? Math.max(1L, TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0L;
+    }
+
+    public boolean isUnlimited() {
+        return intervalNanos == 0;
+    }
+
+    /**
+     * Waits until a permit is available.
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0)
+            return;
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextPermitAt < now)
+                nextPermitAt = now;
+            waitNanos = nextPermitAt - now;
+            nextPermitAt += intervalNanos;
+        }
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
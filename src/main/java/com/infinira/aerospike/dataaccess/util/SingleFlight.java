@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls with the same key. While a call for a key is in flight, other callers of the same
+ * key wait for its result instead of making the call again. Results are handed to all callers as they are, so
+ * callers of a shared result must not change it.
+ * Variants of a call, for example reads of different fields of the same record, use variantKey, so that
+ * forget ends the flights of all variants of a key.
+ */
+public final class SingleFlight<V> {
+    // Separates a key from its variant.
+    private final static char VARIANT_SEPARATOR = '\0';
+
+    private final ConcurrentMap<String, Flight<V>> flights = new ConcurrentHashMap<String, Flight<V>>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Result of a call.
+     */
+    public static final class Call<V> {
+        private final V value;
+        private final boolean shared;
+
+        Call(V value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        // True if the value was handed to more than one caller.
+        public boolean isShared() {
+            return shared;
+        }
+    }
+
+    private static final class Flight<V> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Guarded by this.
+        private boolean closed;
+        private int followers;
+        private V value;
+        private RuntimeException failure;
+
+        // Joins the flight. Returns false if the flight already finished.
+        synchronized boolean join() {
+            if (closed)
+                return false;
+            followers++;
+            return true;
+        }
+
+        // Closes the flight for new followers. Returns true if anybody joined.
+        synchronized boolean close() {
+            closed = true;
+            return followers > 0;
+        }
+    }
+
+    /**
+     * Makes a call or waits for the call of the same key in flight.
+     * @param key call key
+     * @param loader call to make
+     * @return result of the call, shared with other callers or not
+     */
+    public Call<V> execute(String key, Callable<V> loader) {
+        Flight<V> flight = new Flight<V>();
+        while (true) {
+            Flight<V> existing = flights.putIfAbsent(key, flight);
+            if (existing == null)
+                break;
+            if (existing.join()) {
+                coalesced.incrementAndGet();
+                return await(existing);
+            }
+            // The flight finished right now. Start a new one.
+        }
+        calls.incrementAndGet();
+        boolean shared;
+        try {
+            flight.value = loader.call();
+        } catch (RuntimeException e) {
+            flight.failure = e;
+        } catch (Exception e) {
+            flight.failure = new IllegalStateException(e);
+        } catch (Error e) {
+            flight.failure = new IllegalStateException(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+            shared = flight.close();
+            flight.done.countDown();
+        }
+        if (flight.failure != null)
+            throw flight.failure;
+        return new Call<V>(flight.value, shared);
+    }
+
+    /**
+     * Ends the flights of a key and of all its variants for new callers, for example after the value changed.
+     * Callers that joined a flight before still get its result; later callers make a new call.
+     * @param key call key
+     */
+    public void forget(String key) {
+        flights.remove(key);
+        String prefix = key + VARIANT_SEPARATOR;
+        for (String flightKey : flights.keySet()) {
+            if (flightKey.startsWith(prefix))
+                flights.remove(flightKey);
+        }
+    }
+
+    /**
+     * Gets the key of a variant of a call.
+     * @param key call key
+     * @param variant variant, for example a list of field names
+     * @return variant key
+     */
+    public static String variantKey(String key, String variant) {
+        return key + VARIANT_SEPARATOR + variant;
+    }
+
+    private Call<V> await(Flight<V> flight) {
+        try {
+            flight.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced call", e);
+        }
+        if (flight.failure != null)
+            throw flight.failure;
+        return new Call<V>(flight.value, true);
+    }
+
+    // Number of calls made.
+    public long getCalls() {
+        return calls.get();
+    }
+
+    // Number of callers that got the result of another call.
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    // Number of calls in flight.
+    public int getInFlight() {
+        return flights.size();
+    }
+}
@@ -0,0 +1,58 @@
+-- Stream UDFs for AerospikeRepository.aggregate. Registered on the cluster by UdfModule.
+-- Records without the bin are skipped. Numeric aggregations also skip records with a non numeric value.
+
+local function has_bin(bin)
+    return function(rec)
+        return bin == nil or rec[bin] ~= nil
+    end
+end
+
+local function has_number(bin)
+    return function(rec)
+        return type(rec[bin]) == 'number'
+    end
+end
+
+local function bin_value(bin)
+    return function(rec)
+        return rec[bin]
+    end
+end
+
+local function one(rec)
+    return 1
+end
+
+local function add(a, b)
+    return a + b
+end
+
+-- Number of records, or of records that have the bin.
+function count(stream, bin)
+    return stream : filter(has_bin(bin)) : map(one) : reduce(add)
+end
+
+function sum(stream, bin)
+    return stream : filter(has_number(bin)) : map(bin_value(bin)) : reduce(add)
+end
+
+function min(stream, bin)
+    return stream : filter(has_number(bin)) : map(bin_value(bin)) : reduce(math.min)
+end
+
+function max(stream, bin)
+    return stream : filter(has_number(bin)) : map(bin_value(bin)) : reduce(math.max)
+end
+
+-- Number of records by bin value.
+function group_by_count(stream, bin)
+    local function accumulate(groups, rec)
+        local value = rec[bin]
+        groups[value] = (groups[value] or 0) + 1
+        return groups
+    end
+    local function merge(a, b)
+        return map.merge(a, b, add)
+    end
+    return stream : filter(has_bin(bin)) : aggregate(map(), accumulate) : reduce(merge)
+end
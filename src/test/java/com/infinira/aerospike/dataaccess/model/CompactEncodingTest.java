@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.model;
+
+import com.infinira.aerospike.dataaccess.repository.AerospikeRepository;
+import com.infinira.aerospike.dataaccess.repository.SetDelete;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CompactEncodingTest {
+    static String setName = "CompactEntity";
+    AerospikeRepository<CompactEntity> compactRepository = new AerospikeRepository<CompactEntity>("test", CompactEntity.class, setName);
+    AerospikeRepository<GeneralEntity> legacyRepository = new AerospikeRepository<GeneralEntity>("test", GeneralEntity.class, setName);
+
+    // General entity with compact value encoding.
+    public static class CompactEntity extends GeneralEntity {
+        @Override
+        protected ValueEncoding getValueEncoding() {
+            return ValueEncoding.COMPACT;
+        }
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+    }
+
+    @Test
+    public void testCompactValues() throws Exception {
+        CompactEntity entity = new CompactEntity();
+        entity.setVarKey("201");
+        entity.setVarBoolean(true);
+        entity.setVarFloat(3.21F);
+        entity.setVarBigdecimal(new BigDecimal("43.45"));
+        assertThat(entity.getAllFieldValues().get(GeneralEntity.VAR_BOOLEAN)).isEqualTo(1L);
+        assertThat(entity.getAllFieldValues().get(GeneralEntity.VAR_FLOAT)).isInstanceOf(Double.class);
+        assertThat(entity.getAllFieldValues().get(GeneralEntity.VAR_BIGDECIMAL)).isInstanceOf(List.class);
+
+        compactRepository.save(entity);
+        CompactEntity result = compactRepository.findOne("201");
+        assertThat(result.getVarBoolean()).isTrue();
+        assertThat(result.getVarFloat()).isEqualTo(3.21F);
+        assertThat(result.getVarBigdecimal()).isEqualTo(new BigDecimal("43.45"));
+    }
+
+    @Test
+    public void testLargeBigDecimal() throws Exception {
+        CompactEntity entity = new CompactEntity();
+        entity.setVarKey("202");
+        BigDecimal large = new BigDecimal("123456789012345678901234567890.123456789");
+        entity.setVarBigdecimal(large);
+        assertThat(entity.getAllFieldValues().get(GeneralEntity.VAR_BIGDECIMAL)).isInstanceOf(byte[].class);
+        compactRepository.save(entity);
+        assertThat(compactRepository.findOne("202").getVarBigdecimal()).isEqualTo(large);
+    }
+
+    @Test
+    public void testLegacyValues() throws Exception {
+        // Written with the string encoding, read by the compact entity.
+        GeneralEntity legacy = new GeneralEntity();
+        legacy.setVarKey("203");
+        legacy.setVarBoolean(true);
+        legacy.setVarFloat(3.21F);
+        legacy.setVarBigdecimal(new BigDecimal("43.45"));
+        legacyRepository.save(legacy);
+        CompactEntity result = compactRepository.findOne("203");
+        assertThat(result.getVarBoolean()).isTrue();
+        assertThat(result.getVarFloat()).isEqualTo(3.21F);
+        assertThat(result.getVarBigdecimal()).isEqualTo(new BigDecimal("43.45"));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.model;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class EntityMetadataTest {
+
+    @Test
+    public void testMetadataIsCached() throws Exception {
+        EntityMetadata<UserLogin> metadata = EntityMetadata.forClass(UserLogin.class);
+        assertThat(EntityMetadata.forClass(UserLogin.class)).isSameAs(metadata);
+        assertThat(metadata.getKeyName()).isEqualTo(UserLogin.ACCOUNT_NUMBER);
+        assertThat(EntityMetadata.forClass(GeneralEntity.class).getKeyName()).isEqualTo(GeneralEntity.VAR_KEY);
+    }
+
+    @Test
+    public void testBindRecordData() throws Exception {
+        EntityMetadata<UserLogin> metadata = EntityMetadata.forClass(UserLogin.class);
+        HashMap<String, Object> bins = new HashMap<String, Object>();
+        bins.put(UserLogin.ACCOUNT_NUMBER, "1234-5678");
+        bins.put(UserLogin.USER_ID, "User_1");
+        UserLogin userLogin = metadata.newInstance(bins, 3, 100);
+
+        assertThat(metadata.getKeyValue(userLogin)).isEqualTo("1234-5678");
+        assertThat(metadata.getBins(userLogin)).isSameAs(bins);
+        assertThat(metadata.getGeneration(userLogin)).isEqualTo(3);
+        assertThat(metadata.getExpiration(userLogin)).isEqualTo(100);
+        assertThat(metadata.isFromDb(userLogin)).isTrue();
+
+        // Changes on a bound entity are tracked as the generation is set.
+        userLogin.setUserId("User_2");
+        assertThat(metadata.getChangedFields(userLogin).contains(UserLogin.USER_ID)).isTrue();
+    }
+}
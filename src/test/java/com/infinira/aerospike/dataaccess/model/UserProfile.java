@@ -80,8 +80,20 @@ public class UserProfile extends Entity {
     private static final ArrayList<String> fieldNames = new ArrayList<String>();
     private static final ArrayList<String> mandatoryFieldNames = new ArrayList<String>();
     private static String keyName = ACCOUNT_NUMBER;
+    // Short bin names of the longer field names.
+    private static final Map<String, String> binAliases = new HashMap<String, String>();
 
 
+    static {
+        binAliases.put(PERSONAL_TITLE, "p_title");
+        binAliases.put(MARITAL_STATUS, "m_status");
+        binAliases.put(PHOTO_UPDATED_ON, "photo_upd");
+        binAliases.put(MPHONE_COUNTRY_CODE, "m_cc");
+        binAliases.put(MPHONE_AREA_CODE, "m_ac");
+        binAliases.put(POSTAL_CODE, "a_pc");
+        binAliases.put(COUNTRY_CODE, "a_cc");
+    }
+
     static {
         fieldNames.add(ACCOUNT_NUMBER);
         fieldNames.add(USER_ID);
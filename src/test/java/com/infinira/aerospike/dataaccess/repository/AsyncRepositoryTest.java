@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class AsyncRepositoryTest {
+    String accountNumberPrefix = "7272-1212-12121";
+    String setName = "AsyncUserLogin";
+    AerospikeAsyncRepository<UserLogin> asyncRepository = new AerospikeAsyncRepository<UserLogin>("test", UserLogin.class, setName, 16);
+
+    public UserLogin createUserLogin(String accountNumber) {
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_" + accountNumber);
+        userLogin.setCurrentPassword("password");
+        userLogin.setEnabled(true);
+        userLogin.setSuccessiveFailedLogins(0);
+        return userLogin;
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+    }
+
+    @Test(priority = 1)
+    public void testSaveAndFindOne() throws Exception {
+        // Fire 100 saves without waiting for each one.
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(asyncRepository.save(createUserLogin(accountNumberPrefix + "-" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).get();
+        Assert.assertEquals(asyncRepository.getInFlight(), 0);
+
+        UserLogin userLogin = asyncRepository.findOne(accountNumberPrefix + "-10").get();
+        Assert.assertEquals(userLogin.getUserId(), "User_" + accountNumberPrefix + "-10");
+        assertTrue(asyncRepository.exists(accountNumberPrefix + "-10").get());
+    }
+
+    @Test(priority = 2)
+    public void testBatchGet() throws Exception {
+        String[] ids = new String[25];
+        for (int i = 0; i < 25; i++) {
+            ids[i] = accountNumberPrefix + "-" + i;
+        }
+        Assert.assertEquals(asyncRepository.findAll(ids).get().size(), 25);
+    }
+
+    @Test(priority = 2)
+    public void testAdd() throws Exception {
+        UserLogin userLogin = asyncRepository.findOne(accountNumberPrefix + "-20").get();
+        UserLogin result = asyncRepository.add(userLogin, UserLogin.SUCCESSIVE_FAILED_LOGINS, 3).get();
+        Assert.assertEquals(result.getSuccessiveFailedLogins(), 3);
+    }
+
+    @Test(priority = 3)
+    public void testDelete() throws Exception {
+        assertTrue(asyncRepository.delete(accountNumberPrefix + "-30").get());
+        assertNull(asyncRepository.findOne(accountNumberPrefix + "-30").get());
+        assertFalse(asyncRepository.exists(accountNumberPrefix + "-30").get());
+    }
+}
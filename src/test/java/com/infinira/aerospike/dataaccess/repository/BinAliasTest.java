@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.infinira.aerospike.dataaccess.model.UserProfile;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BinAliasTest {
+    String setName = "AliasedUserProfile";
+    AerospikeRepository<UserProfile> repository = new AerospikeRepository<UserProfile>("test", UserProfile.class, setName);
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+    }
+
+    @Test(priority = 1)
+    public void testShortBinNames() throws Exception {
+        UserProfile userProfile = new UserProfile();
+        userProfile.setAccountNumber("1111-2222-33333");
+        userProfile.setUserId("User_1");
+        userProfile.setPostalCode("560001");
+        repository.insert(userProfile);
+
+        Record record = AerospikeClientUtil.getClient().get(null, repository.createKey("1111-2222-33333"));
+        assertEquals(record.getValue("a_pc"), "560001");
+        assertFalse(record.bins.containsKey(UserProfile.POSTAL_CODE));
+
+        assertEquals(repository.findOne("1111-2222-33333").getPostalCode(), "560001");
+        assertEquals(repository.get("1111-2222-33333", UserProfile.POSTAL_CODE), "560001");
+        assertEquals(repository.getBinName(UserProfile.POSTAL_CODE), "a_pc");
+    }
+
+    @Test(priority = 2)
+    public void testMigration() throws Exception {
+        // Record written before the alias was declared.
+        Key key = repository.createKey("4444-5555-66666");
+        AerospikeClientUtil.getClient().put(null, key, new Bin(UserProfile.ACCOUNT_NUMBER, "4444-5555-66666"),
+                new Bin(UserProfile.POSTAL_CODE, "110001"));
+        assertEquals(repository.findOne("4444-5555-66666").getPostalCode(), "110001");
+
+        assertEquals(repository.migrateBinAliases(), 1);
+        Record record = AerospikeClientUtil.getClient().get(null, key);
+        assertEquals(record.getValue("a_pc"), "110001");
+        assertFalse(record.bins.containsKey(UserProfile.POSTAL_CODE));
+        assertTrue(repository.exists("4444-5555-66666"));
+        assertEquals(repository.findOne("4444-5555-66666").getPostalCode(), "110001");
+    }
+}
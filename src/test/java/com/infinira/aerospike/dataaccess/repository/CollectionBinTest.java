@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class CollectionBinTest {
+    String setName = "CollectionUserLogin";
+    String accountNumber = "9595-7878-78787";
+    AerospikeRepository<UserLogin> repository = new AerospikeRepository<UserLogin>("test", UserLogin.class, setName);
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_1");
+        userLogin.setValue("devices", new ArrayList<String>(Arrays.asList("phone", "tablet")));
+        Map<String, Object> settings = new HashMap<String, Object>();
+        settings.put("theme", "dark");
+        userLogin.setValue("settings", settings);
+        repository.insert(userLogin);
+    }
+
+    @Test(priority = 1)
+    public void testListOperations() throws Exception {
+        assertEquals(repository.listAppend(accountNumber, "devices", "laptop"), 3);
+        assertEquals(repository.listAppendItems(accountNumber, "devices", Arrays.asList("watch", "tv")), 5);
+        assertEquals(repository.listGet(accountNumber, "devices", 2), "laptop");
+        assertEquals(repository.listGet(accountNumber, "devices", -1), "tv");
+        assertEquals(repository.listRemove(accountNumber, "devices", 0), "phone");
+        assertEquals(repository.listSize(accountNumber, "devices"), 4);
+
+        List<?> devices = (List<?>) repository.findOne(accountNumber).getValue("devices");
+        assertEquals(devices, Arrays.asList("tablet", "laptop", "watch", "tv"));
+    }
+
+    @Test(priority = 1)
+    public void testMapOperations() throws Exception {
+        assertEquals(repository.mapPut(accountNumber, "settings", "lang", "en"), 2);
+        Map<String, Object> items = new HashMap<String, Object>();
+        items.put("pageSize", 50L);
+        items.put("theme", "light");
+        assertEquals(repository.mapPutItems(accountNumber, "settings", items), 3);
+        assertEquals(repository.mapGetByKey(accountNumber, "settings", "theme"), "light");
+        assertEquals(repository.mapRemoveByKey(accountNumber, "settings", "lang"), "en");
+        assertNull(repository.mapGetByKey(accountNumber, "settings", "lang"));
+        assertEquals(repository.mapSize(accountNumber, "settings"), 2);
+    }
+
+    @Test(priority = 2, expectedExceptions = IllegalArgumentException.class)
+    public void testNonNativeValue() throws Exception {
+        repository.listAppend(accountNumber, "devices", new Object());
+    }
+}
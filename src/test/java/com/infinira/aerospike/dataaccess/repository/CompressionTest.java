@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.EntityMetadata;
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CompressionTest {
+    String setName = "CompressedUserLogin";
+    String accountNumber = "7373-5656-56565";
+    AerospikeRepository<UserLogin> repository = new AerospikeRepository<UserLogin>("test", UserLogin.class, setName);
+    BinCompressor compressor = new BinCompressor(256, Deflater.BEST_SPEED);
+    EntityMetadata<UserLogin> metadata = EntityMetadata.forClass(UserLogin.class);
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+        repository.setCompressor(compressor);
+    }
+
+    private String largeHint() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("Password hint line ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test(priority = 1)
+    public void testRoundTrip() throws Exception {
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_1");
+        userLogin.setPasswordHint(largeHint());
+        repository.insert(userLogin);
+        assertEquals(compressor.getCompressedValues(), 1);
+        assertTrue(compressor.getCompressionRatio() < 0.5);
+
+        // Stored as a compressed blob, read back as the original string.
+        assertTrue(BinCompressor.isCompressed(AerospikeClientUtil.getClient().get(null, repository.createKey(accountNumber)).getValue(UserLogin.PASSWORD_HINT)));
+        assertEquals(repository.findOne(accountNumber).getPasswordHint(), largeHint());
+        assertEquals(repository.get(accountNumber, UserLogin.PASSWORD_HINT), largeHint());
+    }
+
+    @Test(priority = 2)
+    public void testUntouchedValueIsNotRecompressed() throws Exception {
+        UserLogin userLogin = repository.findOne(accountNumber);
+        userLogin.setUserId("User_2");
+        repository.save(userLogin);
+        assertEquals(compressor.getCompressedValues(), 1);
+        assertEquals(repository.findOne(accountNumber).getPasswordHint(), largeHint());
+    }
+
+    @Test(priority = 3)
+    public void testDecodedOnFirstAccess() throws Exception {
+        UserLogin userLogin = repository.findOne(accountNumber);
+        // Kept in its database form until the field is read.
+        assertTrue(BinCompressor.isCompressed(metadata.getBins(userLogin).get(UserLogin.PASSWORD_HINT)));
+        assertEquals(userLogin.getPasswordHint(), largeHint());
+        assertEquals(metadata.getBins(userLogin).get(UserLogin.PASSWORD_HINT), largeHint());
+        assertTrue(userLogin.getValueChangeStatus().isEmpty());
+    }
+
+    @Test(priority = 3)
+    public void testDecodedBeforeHandedOut() throws Exception {
+        // The field map and the serialized form never hold the database form.
+        assertEquals(repository.findOne(accountNumber).getAllFieldValues().get(UserLogin.PASSWORD_HINT), largeHint());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(repository.findOne(accountNumber));
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        UserLogin copy = (UserLogin) in.readObject();
+        assertEquals(copy.getPasswordHint(), largeHint());
+    }
+
+    @Test(priority = 4)
+    public void testReadableWithoutCompressor() throws Exception {
+        repository.setCompressor(null);
+        assertEquals(repository.findOne(accountNumber).getPasswordHint(), largeHint());
+        assertFalse(BinCompressor.isCompressed("plain".getBytes()));
+    }
+
+    @Test(priority = 5)
+    public void testUserBytesLikeCompressedBlob() throws Exception {
+        repository.setCompressor(compressor);
+        byte[] photo = {(byte) 0xA5, 'I', 'Z', 1, 0, 7, 8, 9};
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber + "-bytes");
+        userLogin.setUserId("User_1");
+        userLogin.setValue("photo", photo);
+        repository.insert(userLogin);
+
+        // Below the threshold, so stored uncompressed behind a raw header.
+        Object stored = AerospikeClientUtil.getClient().get(null, repository.createKey(accountNumber + "-bytes")).getValue("photo");
+        assertFalse(BinCompressor.isCompressed(stored));
+        assertTrue(BinMarker.is(stored, BinMarker.RAW));
+        assertTrue(Arrays.equals((byte[]) repository.findOne(accountNumber + "-bytes").getValue("photo"), photo));
+        assertTrue(Arrays.equals((byte[]) repository.get(accountNumber + "-bytes", "photo"), photo));
+    }
+}
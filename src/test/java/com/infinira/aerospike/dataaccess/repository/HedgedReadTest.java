@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class HedgedReadTest extends UserLoginSetTest {
+
+    public HedgedReadTest() {
+        super("HedgedUserLogin", "6262-4545-45454");
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        insertUserLogin();
+        // Zero delay, so that every read is hedged.
+        repository.enableHedgedReads(new HedgedReadOptions(95.0, 0, 0));
+    }
+
+    @Test
+    public void testHedgedReads() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            assertEquals(repository.findOne(accountNumber).getUserId(), "User_1");
+            assertEquals(repository.get(accountNumber, UserLogin.USER_ID), "User_1");
+        }
+        assertNull(repository.findOne("NoSuchAccount"));
+        HedgedReader reader = repository.getHedgedReader();
+        assertEquals(reader.getReads(), 41);
+        assertTrue(reader.getHedges() > 0);
+        assertTrue(reader.getHedgesWon() <= reader.getHedges());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class KeyFilterTest extends UserLoginSetTest {
+
+    public KeyFilterTest() {
+        super("KeyFilterUserLogin", "4848-2727-27272");
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        insertUserLogins(50);
+        repository.enableKeyFilter(new KeyFilterOptions(1000, 0.01, 60000));
+    }
+
+    @Test(priority = 1)
+    public void testNegativeLookups() throws Exception {
+        KeyFilter<UserLogin> keyFilter = repository.getKeyFilter();
+        assertEquals(keyFilter.getKeyCount(), 50);
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(repository.findOne(accountNumber + "-" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(repository.exists("NoSuchAccount-" + i));
+        }
+        // Most misses are answered by the filter.
+        assertTrue(keyFilter.getNegatives() > 950);
+        assertTrue(keyFilter.getFalsePositiveRate() < 0.01);
+        assertTrue(keyFilter.getMemoryBytes() > 0);
+    }
+
+    @Test(priority = 2)
+    public void testWritesUpdateFilter() throws Exception {
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber + "-new");
+        repository.insert(userLogin);
+        assertTrue(repository.exists(accountNumber + "-new"));
+        repository.delete(accountNumber + "-new");
+        assertNull(repository.findOne(accountNumber + "-new"));
+        assertEquals(repository.getKeyFilter().getDeletesSinceRebuild(), 1);
+        repository.getKeyFilter().rebuild();
+        assertEquals(repository.getKeyFilter().getDeletesSinceRebuild(), 0);
+    }
+}
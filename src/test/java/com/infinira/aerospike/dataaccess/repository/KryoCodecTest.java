@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class KryoCodecTest {
+    String setName = "KryoUserLogin";
+    String accountNumber = "8484-6767-67676";
+    AerospikeRepository<UserLogin> repository = new AerospikeRepository<UserLogin>("test", UserLogin.class, setName);
+
+    // Value class without a default constructor.
+    static class Device {
+        private final String name;
+        private final long lastSeen;
+
+        Device(String name, long lastSeen) {
+            this.name = name;
+            this.lastSeen = lastSeen;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Device && ((Device) o).name.equals(name) && ((Device) o).lastSeen == lastSeen;
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        SetDelete.clearSet("test", setName);
+        KryoCodec.register(UserLogin.class, Device.class);
+    }
+
+    @Test
+    public void testNativeValues() throws Exception {
+        assertTrue(KryoCodec.isNative("text"));
+        assertTrue(KryoCodec.isNative(Arrays.asList(1L, "a", 2.5)));
+        assertFalse(KryoCodec.isNative(new HashSet<String>()));
+        assertFalse(KryoCodec.isNative(Arrays.asList(new Device("phone", 1))));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Device device = new Device("phone", 1234567L);
+        Set<String> roles = new HashSet<String>(Arrays.asList("admin", "user"));
+        List<Device> devices = new ArrayList<Device>(Arrays.asList(device, new Device("tablet", 7654321L)));
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_1");
+        userLogin.setValue("device", device);
+        userLogin.setValue("roles", roles);
+        userLogin.setValue("devices", devices);
+        repository.insert(userLogin);
+
+        // Stored with Kryo instead of Java serialization.
+        Object stored = AerospikeClientUtil.getClient().get(null, repository.createKey(accountNumber)).getValue("device");
+        assertTrue(KryoCodec.isEncoded(stored));
+
+        UserLogin read = repository.findOne(accountNumber);
+        assertEquals(read.getValue("device"), device);
+        assertEquals(read.getValue("roles"), roles);
+        assertEquals(read.getValue("devices"), devices);
+        assertEquals(repository.get(accountNumber, "device"), device);
+    }
+
+    @Test
+    public void testUserBytesLikeKryoBlob() throws Exception {
+        byte[] photo = {(byte) 0xA5, 'I', 'K', 1, 7, 8, 9};
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber + "-bytes");
+        userLogin.setUserId("User_2");
+        userLogin.setValue("photo", photo);
+        repository.insert(userLogin);
+
+        // Stored behind a raw header, so that it is never taken for a Kryo blob.
+        Object stored = AerospikeClientUtil.getClient().get(null, repository.createKey(accountNumber + "-bytes")).getValue("photo");
+        assertFalse(KryoCodec.isEncoded(stored));
+        assertTrue(BinMarker.is(stored, BinMarker.RAW));
+
+        // Written back without being accessed, then read.
+        UserLogin read = repository.findOne(accountNumber + "-bytes");
+        read.setUserId("User_3");
+        repository.save(read);
+        read = repository.findOne(accountNumber + "-bytes");
+        assertTrue(Arrays.equals((byte[]) read.getValue("photo"), photo));
+        assertTrue(Arrays.equals((byte[]) repository.get(accountNumber + "-bytes", "photo"), photo));
+    }
+}
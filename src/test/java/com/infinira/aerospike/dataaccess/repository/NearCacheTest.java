@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class NearCacheTest extends UserLoginSetTest {
+
+    public NearCacheTest() {
+        super("NearCacheUserLogin", "6262-1414-14141");
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        repository.enableNearCache(new NearCacheOptions(2, 60000, false));
+        insertUserLogins(3);
+    }
+
+    @Test(priority = 1)
+    public void testHitReturnsCopy() throws Exception {
+        NearCache<UserLogin> cache = repository.getNearCache();
+        UserLogin first = repository.findOne(accountNumber + "-0");
+        first.setUserId("Changed locally");
+        UserLogin second = repository.findOne(accountNumber + "-0");
+        assertNotSame(first, second);
+        assertEquals(second.getUserId(), "User_0");
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getHits(), 1);
+    }
+
+    @Test(priority = 2)
+    public void testInvalidation() throws Exception {
+        UserLogin userLogin = repository.findOne(accountNumber + "-0");
+        userLogin.setUserId("User_Updated");
+        repository.update(userLogin);
+        assertEquals(repository.findOne(accountNumber + "-0").getUserId(), "User_Updated");
+        repository.delete(accountNumber + "-0");
+        assertNull(repository.findOne(accountNumber + "-0"));
+        assertTrue(repository.getNearCache().getInvalidations() >= 2);
+    }
+
+    @Test(priority = 3)
+    public void testEviction() throws Exception {
+        for (int i = 1; i < 3; i++) {
+            repository.findOne(accountNumber + "-" + i);
+        }
+        repository.findOne(accountNumber + "-9");
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber + "-3");
+        repository.insert(userLogin);
+        repository.findOne(accountNumber + "-3");
+        assertEquals(repository.getNearCache().size(), 2);
+        assertTrue(repository.getNearCache().getEvictions() >= 1);
+    }
+}
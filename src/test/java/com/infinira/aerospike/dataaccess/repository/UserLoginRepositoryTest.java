@@ -17,9 +17,12 @@
 
 package com.infinira.aerospike.dataaccess.repository;
 
+import com.aerospike.client.Value;
 import com.aerospike.client.query.Filter;
 import com.aerospike.client.query.IndexType;
+import com.aerospike.helper.query.Qualifier;
 import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.springframework.data.util.CloseableIterator;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -28,6 +31,12 @@ import org.testng.annotations.Test;
 import java.net.UnknownHostException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.testng.Assert.*;
 
@@ -171,6 +180,90 @@ public class UserLoginRepositoryTest {
         Assert.assertEquals(result.size(),25);
     }
 
+    @Test (priority=2)
+    public void testStream() throws Exception {
+        Stream<UserLogin> stream = userLoginAerospikeRepository.stream();
+        try {
+            assertEquals(stream.count(), userLoginArrayList.size() + 1);
+        } finally {
+            stream.close();
+        }
+        stream = userLoginAerospikeRepository.stream(Filter.equal("enabled", "1"), 1, 5);
+        try {
+            assertEquals(stream.count(), Math.min(5, Math.max(0, noActiveUsers - 1)));
+        } finally {
+            stream.close();
+        }
+        CloseableIterator<UserLogin> iterator = userLoginAerospikeRepository.iterate(null, 0, 3);
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertNotNull(iterator.next().getAccountNumber());
+            count++;
+        }
+        assertEquals(count, 3);
+    }
+
+    @Test (priority=2)
+    public void testScanPage() throws Exception {
+        Set<String> accountNumbers = new HashSet<String>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ScanPage<UserLogin> page = userLoginAerospikeRepository.scanPage(cursor, 7);
+            assertTrue(page.getEntities().size() <= 7);
+            for (UserLogin ul : page.getEntities()) {
+                assertTrue(accountNumbers.add(ul.getAccountNumber()));
+            }
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(accountNumbers.size(), userLoginArrayList.size() + 1);
+        assertTrue(pages >= 15);
+    }
+
+    @Test (priority=2)
+    public void testScanParallel() throws Exception {
+        final Set<String> accountNumbers = Collections.synchronizedSet(new HashSet<String>());
+        long count = userLoginAerospikeRepository.scanParallel(new ScanOptions(0, UserLogin.USER_ID), new EntityConsumer<UserLogin>() {
+            @Override
+            public void accept(UserLogin entity) {
+                assertTrue(entity.isPartial());
+                accountNumbers.add(entity.getAccountNumber());
+            }
+        });
+        assertEquals(count, userLoginArrayList.size() + 1);
+        assertEquals(accountNumbers.size(), userLoginArrayList.size() + 1);
+    }
+
+    @Test (priority=2)
+    public void testReusedEntities() throws Exception {
+        CloseableIterator<UserLogin> iterator = userLoginAerospikeRepository.iterateReused(null);
+        UserLogin first = iterator.next();
+        assertTrue(first.isReused());
+        UserLogin kept = (UserLogin) first.detach();
+        String accountNumber = kept.getAccountNumber();
+        assertFalse(kept.isReused());
+        int count = 1;
+        while (iterator.hasNext()) {
+            assertSame(iterator.next(), first);
+            count++;
+        }
+        assertEquals(count, userLoginArrayList.size() + 1);
+        assertEquals(kept.getAccountNumber(), accountNumber);
+
+        ScanOptions options = new ScanOptions();
+        options.setReuseEntities(true);
+        final Set<String> accountNumbers = Collections.synchronizedSet(new HashSet<String>());
+        userLoginAerospikeRepository.scanParallel(options, new EntityConsumer<UserLogin>() {
+            @Override
+            public void accept(UserLogin entity) {
+                assertTrue(entity.isReused());
+                accountNumbers.add(entity.getAccountNumber());
+            }
+        });
+        assertEquals(accountNumbers.size(), userLoginArrayList.size() + 1);
+    }
+
     @Test (priority=2)
     public void testFindAllUsingQuery() throws Exception {
         //userLoginRepository.createIndex("UserLoginEnabled","enabled",IndexType.STRING);
@@ -179,12 +272,155 @@ public class UserLoginRepositoryTest {
         Assert.assertEquals(result.size(),noActiveUsers);
     }
 
+    @Test (priority=2)
+    public void testAggregate() throws Exception {
+        int total = userLoginArrayList.size() + 1;
+        assertEquals(userLoginAerospikeRepository.aggregate(Aggregation.count()).longValue(), total);
+        assertEquals(userLoginAerospikeRepository.aggregate(Aggregation.count(UserLogin.ENABLED)).longValue(), total);
+        assertEquals(userLoginAerospikeRepository.aggregate(Aggregation.sum(UserLogin.SUCCESSIVE_FAILED_LOGINS)).longValue(), total);
+        assertEquals(userLoginAerospikeRepository.aggregate(Aggregation.min(UserLogin.SUCCESSIVE_FAILED_LOGINS)).longValue(), 1);
+        assertEquals(userLoginAerospikeRepository.aggregate(Aggregation.max(UserLogin.SUCCESSIVE_FAILED_LOGINS)).longValue(), 1);
+        Map<Object, Long> groups = userLoginAerospikeRepository.aggregate(Aggregation.groupByCount(UserLogin.ENABLED));
+        assertEquals(groups.get("1") != null ? groups.get("1").longValue() : 0, noActiveUsers);
+        assertEquals(userLoginAerospikeRepository.aggregate(Filter.equal("enabled", "1"), Aggregation.count()).longValue(), noActiveUsers);
+    }
+
+    @Test (priority=2)
+    public void testQueryPlanner() throws Exception {
+        Qualifier enabled = new Qualifier(UserLogin.ENABLED, Qualifier.FilterOperation.EQ, Value.get("1"));
+        Qualifier failedLogins = new Qualifier(UserLogin.SUCCESSIVE_FAILED_LOGINS, Qualifier.FilterOperation.EQ, Value.get(1));
+        QueryPlan plan = userLoginAerospikeRepository.explain(failedLogins, enabled);
+        assertFalse(plan.isScan());
+        assertEquals(plan.getIndexName(), "UserLoginEnabled");
+        assertEquals(plan.getQualifiers().length, 1);
+        assertEquals(plan.getQualifiers()[0].getField(), UserLogin.SUCCESSIVE_FAILED_LOGINS);
+        assertTrue(userLoginAerospikeRepository.explain(failedLogins).isScan());
+        // Same results as the explicit filter, without choosing it.
+        assertEquals(userLoginAerospikeRepository.findAll(null, enabled, failedLogins).size(), noActiveUsers);
+    }
+
+    @Test (priority=2)
+    public void testBatchExistsAndHeaders() throws Exception {
+        String[] ids = new String[]{userLoginArrayList.get(0).getAccountNumber(), "NoSuchAccount", null,
+                userLoginArrayList.get(1).getAccountNumber()};
+        boolean[] exists = userLoginAerospikeRepository.exists(ids);
+        assertTrue(exists[0]);
+        assertFalse(exists[1]);
+        assertFalse(exists[2]);
+        assertTrue(exists[3]);
+
+        RecordHeader[] headers = userLoginAerospikeRepository.headers(ids);
+        assertTrue(headers[0].getGeneration() > 0);
+        assertEquals(headers[0].getKeyValue(), ids[0]);
+        assertNull(headers[1]);
+        assertNull(headers[2]);
+        assertTrue(headers[3].getGeneration() > 0);
+    }
+
     @Test (priority=1)
     public void testCount() throws Exception {
         long count = userLoginAerospikeRepository.count();
         Assert.assertEquals(count, userLoginArrayList.size()+1);
+        SetStatistics.Snapshot snapshot = userLoginAerospikeRepository.getStatistics().getSnapshot();
+        assertTrue(snapshot.getReplicationFactor() > 0);
+        assertEquals(snapshot.getNodes().size(), AerospikeClientUtil.getClient().getNodes().length);
+        assertEquals(SetStatistics.parse("objects=10:tombstones=0;").get("objects"), "10");
+    }
+
+
+    @Test (priority=3)
+    public void testBulkWriter() throws Exception {
+        for (UserLogin ul : userLoginArrayList) {
+            ul.setLastTimezone("EST");
+        }
+        BulkWriter<UserLogin> bulkWriter = userLoginAerospikeRepository.bulkWriter(new BulkWriteOptions(4, 10, 0));
+        try {
+            BulkWriter.Result result = bulkWriter.saveAll(userLoginArrayList);
+            assertEquals(result.getSucceeded(), userLoginArrayList.size());
+            assertEquals(result.getFailed(), 0);
+            assertEquals(bulkWriter.getPending(), 0);
+            UserLogin ul = userLoginAerospikeRepository.findOne(userLoginArrayList.get(50).getAccountNumber());
+            assertEquals(ul.getLastTimezone(), "EST");
+
+            // Inserting existing records fails each record without stopping the batch.
+            result = bulkWriter.insertAll(userLoginArrayList.subList(0, 20));
+            assertEquals(result.getFailed(), 20);
+            assertEquals(result.getFailures().size(), 20);
+        } finally {
+            bulkWriter.close();
+        }
     }
 
+    @Test (priority=2)
+    public void testBatchReader() throws Exception {
+        String[] ids = new String[userLoginArrayList.size() + 2];
+        for (int i = 0; i < userLoginArrayList.size(); i++) {
+            ids[i] = userLoginArrayList.get(i).getAccountNumber();
+        }
+        ids[ids.length - 2] = "NoSuchAccount";
+        ids[ids.length - 1] = " ";
+        BatchReader<UserLogin> batchReader = userLoginAerospikeRepository.batchReader(new BatchReadOptions(4, 7));
+        try {
+            BatchReader.Result<UserLogin> result = batchReader.read(ids);
+            assertEquals(result.size(), ids.length);
+            assertEquals(result.getFoundCount(), userLoginArrayList.size());
+            assertEquals(result.get(42).getAccountNumber(), ids[42]);
+            assertFalse(result.isFound(ids.length - 2));
+            assertFalse(result.isFound(ids.length - 1));
+
+            final AtomicInteger calls = new AtomicInteger();
+            batchReader.read(ids, new BatchReadListener<UserLogin>() {
+                @Override
+                public void onRecord(int index, String keyValue, UserLogin entity) {
+                    calls.incrementAndGet();
+                }
+            });
+            assertEquals(calls.get(), ids.length);
+        } finally {
+            batchReader.close();
+        }
+    }
+
+    @Test (priority=3)
+    public void testCompareAndUpdate() throws Exception {
+        final String accountNumber = userLoginArrayList.get(60).getAccountNumber();
+        final EntityMutator<UserLogin> increment = new EntityMutator<UserLogin>() {
+            @Override
+            public void mutate(UserLogin ul) {
+                ul.setSuccessiveFailedLogins(ul.getSuccessiveFailedLogins() + 1);
+            }
+        };
+        UserLogin ul = userLoginAerospikeRepository.findOne(accountNumber);
+        ul.setSuccessiveFailedLogins(0);
+        userLoginAerospikeRepository.update(ul);
+
+        // Concurrent increments must not lose updates.
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        try {
+                            userLoginAerospikeRepository.compareAndUpdate(accountNumber, increment, 100);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ul = userLoginAerospikeRepository.findOne(accountNumber);
+        assertEquals(ul.getSuccessiveFailedLogins(), 40);
+
+        CompareAndUpdateResult<UserLogin> result = userLoginAerospikeRepository.compareAndUpdate("NoSuchAccount", increment);
+        assertFalse(result.isUpdated());
+        assertNull(result.getEntity());
+    }
 
     @Test (priority=4)
     public void testDelete() throws Exception {
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+
+/**
+ * Base of the tests of an optional repository feature. Every test class uses its own set, which is cleared
+ * before the tests, and a repository of that set, which is closed after the tests.
+ */
+public abstract class UserLoginSetTest {
+    final String setName;
+    final String accountNumber;
+    final AerospikeRepository<UserLogin> repository;
+
+    UserLoginSetTest(String setName, String accountNumber) {
+        this.setName = setName;
+        this.accountNumber = accountNumber;
+        this.repository = new AerospikeRepository<UserLogin>("test", UserLogin.class, setName);
+    }
+
+    @BeforeClass
+    public void clearSet() throws Exception {
+        SetDelete.clearSet("test", setName);
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        repository.close();
+    }
+
+    // Inserts the user login of accountNumber.
+    void insertUserLogin() {
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_1");
+        repository.insert(userLogin);
+    }
+
+    // Inserts user logins with account numbers accountNumber-0 to accountNumber-(count-1).
+    void insertUserLogins(int count) {
+        for (int i = 0; i < count; i++) {
+            UserLogin userLogin = new UserLogin();
+            userLogin.setAccountNumber(accountNumber + "-" + i);
+            userLogin.setUserId("User_" + i);
+            repository.insert(userLogin);
+        }
+    }
+}
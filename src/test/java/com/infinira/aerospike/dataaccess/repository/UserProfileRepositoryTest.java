@@ -99,4 +99,25 @@ public class UserProfileRepositoryTest {
         UserProfile userProfile2 = new UserProfile(userMap,0,0);
         System.out.println(userProfile2.toString());
     }
-}
\ No newline at end of file
+
+    @Test(dependsOnMethods = "testUserInfo")
+    public void testProjection() throws Exception {
+        AerospikeRepository<UserProfile> repository = RepositoryFactory.getUserProfileRepository();
+        UserProfile partial = repository.findOne("9393-30393", UserProfile.FIRST_NAME, UserProfile.CITY);
+        assertThat(partial.isPartial()).isTrue();
+        assertThat(partial.getAccountNumber()).isEqualTo("9393-30393");
+        assertThat(partial.getFirstName()).isEqualTo("Siddharth");
+        assertThat(partial.getLastName()).isNull();
+
+        // Writing a partial entity must not clear the fields that were not read.
+        partial.setCity("SUNNYVALE");
+        repository.save(partial);
+        UserProfile full = repository.findOne("9393-30393");
+        assertThat(full.isPartial()).isFalse();
+        assertThat(full.getCity()).isEqualTo("SUNNYVALE");
+        assertThat(full.getLastName()).isEqualTo("Garimella");
+
+        assertThat(repository.findAll(new String[]{"9393-30393"}, UserProfile.CITY)).hasSize(1);
+        assertThat(repository.findAllProjected(null, new String[]{UserProfile.CITY}).get(0).getEmail()).isNull();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.repository;
+
+import com.infinira.aerospike.dataaccess.model.UserLogin;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class WriteBehindTest extends UserLoginSetTest {
+
+    public WriteBehindTest() {
+        super("WriteBehindUserLogin", "5151-2323-23232");
+    }
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        // Long interval, so that changes stay in the buffer until flushed.
+        repository.enableWriteBehind(new WriteBehindOptions(60000, 1000, 1000));
+    }
+
+    @Test(priority = 1)
+    public void testCoalescing() throws Exception {
+        UserLogin userLogin = new UserLogin();
+        userLogin.setAccountNumber(accountNumber);
+        userLogin.setUserId("User_1");
+        userLogin.setSuccessiveFailedLogins(0);
+        repository.save(userLogin);
+        for (int i = 1; i <= 100; i++) {
+            userLogin.setSuccessiveFailedLogins(i);
+            repository.save(userLogin);
+        }
+        WriteBehindBuffer<UserLogin> buffer = repository.getWriteBehindBuffer();
+        assertEquals(buffer.getPendingKeys(), 1);
+        assertEquals(buffer.getCoalesced(), 100);
+
+        repository.flush();
+        assertEquals(buffer.getPendingKeys(), 0);
+        assertEquals(buffer.getWritten(), 1);
+        assertEquals(repository.findOne(accountNumber).getSuccessiveFailedLogins(), 100);
+    }
+
+    @Test(priority = 2)
+    public void testReadYourWrites() throws Exception {
+        UserLogin userLogin = repository.findOne(accountNumber);
+        userLogin.setUserId("User_2");
+        repository.update(userLogin);
+        assertTrue(repository.getWriteBehindBuffer().getPendingKeys() == 1);
+        // Reading a pending key flushes it first.
+        assertEquals(repository.findOne(accountNumber).getUserId(), "User_2");
+
+        userLogin.setUserId("User_4");
+        repository.update(userLogin);
+        // Batch reads flush pending keys too.
+        assertEquals(repository.findAll(new String[] { accountNumber }).get(0).getUserId(), "User_4");
+        assertEquals(repository.getWriteBehindBuffer().getPendingKeys(), 0);
+    }
+
+    @Test(priority = 3)
+    public void testDeleteDiscardsPendingWrites() throws Exception {
+        UserLogin userLogin = repository.findOne(accountNumber);
+        userLogin.setUserId("User_3");
+        repository.update(userLogin);
+        repository.delete(accountNumber);
+        repository.flush();
+        assertNull(repository.findOne(accountNumber));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Infinira Software Private Limited.
+ *
+ * Portions may be licensed to Infinira Software Private Limited. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.infinira.aerospike.dataaccess.util;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    // Loader that blocks until released and returns the number of its call.
+    private static class BlockingLoader implements Callable<Integer> {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Integer call() throws Exception {
+            int call = calls.incrementAndGet();
+            release.await();
+            return call;
+        }
+    }
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception {
+        int threads = 16;
+        final SingleFlight<Integer> singleFlight = new SingleFlight<Integer>();
+        final BlockingLoader loader = new BlockingLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SingleFlight.Call<Integer>>> futures = new ArrayList<Future<SingleFlight.Call<Integer>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<SingleFlight.Call<Integer>>() {
+                    @Override
+                    public SingleFlight.Call<Integer> call() {
+                        return singleFlight.execute("key", loader);
+                    }
+                }));
+            }
+            // Release the loader only after all other callers joined its flight.
+            waitFor(singleFlight, threads - 1);
+            loader.release.countDown();
+            for (Future<SingleFlight.Call<Integer>> future : futures) {
+                SingleFlight.Call<Integer> call = future.get();
+                assertEquals(call.getValue().intValue(), 1);
+                assertTrue(call.isShared());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(loader.calls.get(), 1);
+        assertEquals(singleFlight.getCalls(), 1);
+        assertEquals(singleFlight.getCoalesced(), threads - 1);
+        assertEquals(singleFlight.getInFlight(), 0);
+    }
+
+    @Test
+    public void testForgetStartsNewCall() throws Exception {
+        final SingleFlight<Integer> singleFlight = new SingleFlight<Integer>();
+        final BlockingLoader loader = new BlockingLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // A read is blocked when the value is written.
+            Future<SingleFlight.Call<Integer>> before = executor.submit(new Callable<SingleFlight.Call<Integer>>() {
+                @Override
+                public SingleFlight.Call<Integer> call() {
+                    return singleFlight.execute("key", loader);
+                }
+            });
+            while (loader.calls.get() == 0) {
+                Thread.sleep(1);
+            }
+            Future<SingleFlight.Call<Integer>> variant = executor.submit(new Callable<SingleFlight.Call<Integer>>() {
+                @Override
+                public SingleFlight.Call<Integer> call() {
+                    return singleFlight.execute(SingleFlight.variantKey("key", "field"), loader);
+                }
+            });
+            while (loader.calls.get() < 2) {
+                Thread.sleep(1);
+            }
+            singleFlight.forget("key");
+            assertEquals(singleFlight.getInFlight(), 0);
+
+            // A read after the write does not get the value of the read in flight.
+            loader.release.countDown();
+            SingleFlight.Call<Integer> after = singleFlight.execute("key", loader);
+            assertEquals(after.getValue().intValue(), 3);
+            assertFalse(after.isShared());
+            assertEquals(before.get().getValue().intValue(), 1);
+            assertEquals(variant.get().getValue().intValue(), 2);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(singleFlight.getCalls(), 3);
+        assertEquals(singleFlight.getCoalesced(), 0);
+    }
+
+    private void waitFor(SingleFlight<?> singleFlight, long coalesced) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (singleFlight.getCoalesced() < coalesced && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}